@@ -0,0 +1,26 @@
+package com.datastax.driver.core;
+
+import java.util.List;
+
+/**
+ * Builds result metadata for the Cassandra benchmarks. The driver only creates
+ * it from protocol responses, so this class lives in the driver's package and
+ * calls its package-private constructors, which the compiler checks against
+ * the driver on the classpath.
+ */
+public final class BenchmarkColumnDefinitions {
+
+	private BenchmarkColumnDefinitions() {
+	}
+
+	/**
+	 * @return Definitions of text columns with the given names
+	 */
+	public static ColumnDefinitions text(String keyspace, String table, List<String> columns) {
+		ColumnDefinitions.Definition[] definitions = new ColumnDefinitions.Definition[columns.size()];
+		for (int i = 0; i < definitions.length; i++) {
+			definitions[i] = new ColumnDefinitions.Definition(keyspace, table, columns.get(i), DataType.text());
+		}
+		return new ColumnDefinitions(definitions, CodecRegistry.DEFAULT_INSTANCE);
+	}
+}
@@ -0,0 +1,223 @@
+package com.neo4j.datamigration.cassandra;
+
+import com.datastax.driver.core.AbstractGettableData;
+import com.datastax.driver.core.BenchmarkColumnDefinitions;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TypeCodec;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.neo4j.datamigration.migration.service.SyntheticData;
+import com.neo4j.datamigration.utils.PropertiesCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a result page of {@code rows} user rows: the map per row of
+ * {@link CassandraUtil#createResponse(ResultSet)} against the compiled
+ * {@link RowProjection}. The rows hold serialized values and decode them
+ * through the driver's own getters and codecs like a driver row, so only the
+ * conversion is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CassandraUtilBenchmark {
+
+	private static final List<String> COLUMNS = Arrays.asList("id", "rootorgid", "profiledetails");
+
+	@Param({ "4000" })
+	private int rows;
+
+	private ResultSet resultSet;
+	private List<Row> rowList;
+	private RowProjection projection;
+
+	@Setup
+	public void setUp() {
+		for (String column : COLUMNS) {
+			PropertiesCache.getInstance().saveConfigProperty(column, column);
+		}
+		Random random = SyntheticData.random();
+		ColumnDefinitions definitions = BenchmarkColumnDefinitions.text("sunbird", "user", COLUMNS);
+		rowList = new ArrayList<>(rows);
+		for (Map<String, Object> values : SyntheticData.userRows(SyntheticData.userIds(rows, random), random)) {
+			ByteBuffer[] serialized = new ByteBuffer[COLUMNS.size()];
+			for (int i = 0; i < COLUMNS.size(); i++) {
+				serialized[i] = TypeCodec.varchar().serialize((String) values.get(COLUMNS.get(i)),
+						ProtocolVersion.V3);
+			}
+			rowList.add(new StubRow(definitions, serialized));
+		}
+		resultSet = new StubResultSet(definitions, rowList);
+		projection = new RowProjection(definitions, 0, CodecRegistry.DEFAULT_INSTANCE, ProtocolVersion.V3);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> createResponse() {
+		return CassandraUtil.createResponse(resultSet);
+	}
+
+	@Benchmark
+	public RecordBatch decodeProjection() {
+		RecordBatch batch = projection.newBatch(rowList.size());
+		for (Row row : rowList) {
+			projection.decode(row, batch);
+		}
+		return batch;
+	}
+
+	/**
+	 * Row over serialized values, resolving names and decoding like the
+	 * driver's array backed rows.
+	 */
+	private static final class StubRow extends AbstractGettableData implements Row {
+		private final ColumnDefinitions definitions;
+		private final ByteBuffer[] values;
+
+		StubRow(ColumnDefinitions definitions, ByteBuffer[] values) {
+			super(ProtocolVersion.V3);
+			this.definitions = definitions;
+			this.values = values;
+		}
+
+		@Override
+		protected int getIndexOf(String name) {
+			return definitions.getIndexOf(name);
+		}
+
+		@Override
+		protected DataType getType(int i) {
+			return definitions.getType(i);
+		}
+
+		@Override
+		protected String getName(int i) {
+			return definitions.getName(i);
+		}
+
+		@Override
+		protected ByteBuffer getValue(int i) {
+			return values[i];
+		}
+
+		@Override
+		protected CodecRegistry getCodecRegistry() {
+			return CodecRegistry.DEFAULT_INSTANCE;
+		}
+
+		@Override
+		public ColumnDefinitions getColumnDefinitions() {
+			return definitions;
+		}
+
+		@Override
+		public Token getToken(int i) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Token getToken(String name) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Token getPartitionKeyToken() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Single fully fetched page, re-iterable for every invocation.
+	 */
+	private static final class StubResultSet implements ResultSet {
+		private final ColumnDefinitions definitions;
+		private final List<Row> rows;
+
+		StubResultSet(ColumnDefinitions definitions, List<Row> rows) {
+			this.definitions = definitions;
+			this.rows = rows;
+		}
+
+		@Override
+		public ColumnDefinitions getColumnDefinitions() {
+			return definitions;
+		}
+
+		@Override
+		public Iterator<Row> iterator() {
+			return rows.iterator();
+		}
+
+		@Override
+		public List<Row> all() {
+			return rows;
+		}
+
+		@Override
+		public boolean isFullyFetched() {
+			return true;
+		}
+
+		@Override
+		public int getAvailableWithoutFetching() {
+			return rows.size();
+		}
+
+		@Override
+		public Row one() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean wasApplied() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isExhausted() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ListenableFuture<ResultSet> fetchMoreResults() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ExecutionInfo getExecutionInfo() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<ExecutionInfo> getAllExecutionInfo() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.neo4j.datamigration.migration.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the two upload formats from a file in the page cache: the
+ * memory-mapped user ID scanner and the chunked, parallel opencsv relations
+ * reader. Each operation reads the whole file of {@code rows} lines. The
+ * relations reader uses csv.parse.threads and csv.parse.chunk.size.mb, which
+ * can be overridden through environment variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParsingBenchmark {
+
+    @Param({"100000"})
+    private int rows;
+
+    @Param({"4000"})
+    private int batchSize;
+
+    private DataMigrationServiceImpl service;
+    private Path userIdFile;
+    private Path relationsFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        service = new DataMigrationServiceImpl();
+        Random random = SyntheticData.random();
+        List<String> userIds = SyntheticData.userIds(rows, random);
+        userIdFile = Files.createTempFile("bench-users", ".csv");
+        SyntheticData.writeUserIdCsv(userIdFile, userIds, random);
+        relationsFile = Files.createTempFile("bench-relations", ".csv");
+        SyntheticData.writeRelationsCsv(relationsFile, SyntheticData.relationRows(userIds, rows, random));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(userIdFile);
+        Files.deleteIfExists(relationsFile);
+    }
+
+    @Benchmark
+    public void streamUserIdsInBatches(Blackhole bh) throws Exception {
+        service.streamUserIdsInBatches(userIdFile, batchSize, null, bh::consume);
+    }
+
+    @Benchmark
+    public void streamUserRelationsInBatches(Blackhole bh) throws Exception {
+        service.streamUserRelationsInBatches(relationsFile, batchSize, bytes -> {}, bh::consume);
+    }
+}
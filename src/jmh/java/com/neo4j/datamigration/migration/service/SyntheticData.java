@@ -0,0 +1,153 @@
+package com.neo4j.datamigration.migration.service;
+
+import com.neo4j.datamigration.cassandra.RecordBatch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic synthetic inputs shaped like the production data: user rows
+ * as read from the user table, their roles, and the upload CSV files.
+ */
+public final class SyntheticData {
+
+    private static final String[] DESIGNATIONS = {
+            "Section Officer", "Under Secretary", "Deputy Director", "Assistant Engineer", "Joint Secretary"
+    };
+    private static final String[] ROLES = {"PUBLIC", "MDO_ADMIN", "CONTENT_CREATOR", "SPV_ADMIN"};
+    private static final String[] RELATION_TYPES = {
+            "{relationshipType:mentor,status:approved}",
+            "{relationshipType:peer,status:pending}",
+            "{relationshipType:colleague,status:approved}"
+    };
+
+    private SyntheticData() {
+    }
+
+    public static Random random() {
+        return new Random(42);
+    }
+
+    public static List<String> userIds(int count, Random random) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        return ids;
+    }
+
+    /**
+     * A profiledetails payload of a few KB with the designation in the first
+     * professionalDetails entry, as stored by the portal.
+     */
+    public static String profileDetails(Random random) {
+        String designation = DESIGNATIONS[random.nextInt(DESIGNATIONS.length)];
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"personalDetails\":{\"firstname\":\"User").append(random.nextInt(100000))
+                .append("\",\"surname\":\"Test\",\"primaryEmail\":\"user").append(random.nextInt(100000))
+                .append("@example.com\",\"mobile\":\"98").append(10000000 + random.nextInt(89999999))
+                .append("\",\"gender\":\"Male\",\"dob\":\"01-01-1990\",\"domicileMedium\":\"English\"")
+                .append(",\"knownLanguages\":[\"English\",\"Hindi\"],\"postalAddress\":\"Block ")
+                .append(random.nextInt(50)).append(", Sector ").append(random.nextInt(100)).append(", New Delhi\"}")
+                .append(",\"academics\":[");
+        for (int i = 0; i < 3; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"nameOfQualification\":\"Degree ").append(i)
+                    .append("\",\"type\":\"GRADUATE\",\"nameOfInstitute\":\"University ").append(random.nextInt(500))
+                    .append("\",\"yearOfPassing\":\"").append(2000 + random.nextInt(20)).append("\"}");
+        }
+        sb.append("],\"employmentDetails\":{\"service\":\"Central Secretariat Service\",\"cadre\":\"Grade A\"")
+                .append(",\"departmentName\":\"Department ").append(random.nextInt(80)).append("\"}")
+                .append(",\"professionalDetails\":[{\"designation\":\"").append(designation)
+                .append("\",\"name\":\"Ministry ").append(random.nextInt(60))
+                .append("\",\"doj\":\"01-04-2015\",\"group\":\"Group A\",\"payType\":\"Pay Level 10\"}]")
+                .append(",\"skills\":{\"additionalSkills\":\"Noting, drafting, file management\"")
+                .append(",\"certificateDetails\":\"\"},\"interests\":{\"professional\":[\"Policy\",\"Finance\"]")
+                .append(",\"hobbies\":[\"Reading\"]}}");
+        return sb.toString();
+    }
+
+    public static List<Map<String, Object>> userRows(List<String> userIds, Random random) {
+        List<Map<String, Object>> rows = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", userId);
+            row.put("rootorgid", "org" + random.nextInt(1000));
+            row.put("profiledetails", profileDetails(random));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * The user rows in the column-major form the Cassandra reads return.
+     */
+    public static RecordBatch userRecords(List<Map<String, Object>> userRows) {
+        List<String> fields = Arrays.asList("id", "rootorgid", "profiledetails");
+        RecordBatch batch = new RecordBatch(fields, userRows.size());
+        for (Map<String, Object> userRow : userRows) {
+            int row = batch.addRow();
+            for (int c = 0; c < fields.size(); c++) {
+                batch.set(row, c, userRow.get(fields.get(c)));
+            }
+        }
+        return batch;
+    }
+
+    public static Map<String, List<String>> userRoles(List<String> userIds, Random random) {
+        Map<String, List<String>> roles = new HashMap<>();
+        for (String userId : userIds) {
+            int count = 1 + random.nextInt(2);
+            roles.put(userId, new ArrayList<>(Arrays.asList(ROLES).subList(0, count)));
+        }
+        return roles;
+    }
+
+    public static List<List<String>> relationRows(List<String> userIds, int count, Random random) {
+        List<List<String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(Arrays.asList(
+                    userIds.get(random.nextInt(userIds.size())),
+                    RELATION_TYPES[random.nextInt(RELATION_TYPES.length)],
+                    userIds.get(random.nextInt(userIds.size()))));
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the onboarding upload: a header with an id column and one user
+     * per line.
+     */
+    public static void writeUserIdCsv(Path file, List<String> userIds, Random random) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("id,name,email\n");
+            for (String userId : userIds) {
+                int n = random.nextInt(100000);
+                writer.write(userId + ",User " + n + ",user" + n + "@example.com\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the relations upload, quoting the relationship properties since
+     * they contain commas.
+     */
+    public static void writeRelationsCsv(Path file, List<List<String>> relations) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("userId,relationshipType,relationUserId\n");
+            for (List<String> relation : relations) {
+                writer.write(relation.get(0) + ",\"" + relation.get(1) + "\"," + relation.get(2) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.neo4j.datamigration.migration.service;
+
+import com.neo4j.datamigration.cassandra.RecordBatch;
+import com.neo4j.datamigration.migration.job.MigrationJob;
+import com.neo4j.datamigration.migration.json.JsonSupport;
+import com.neo4j.datamigration.migration.metrics.MigrationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * CPU-bound transforms between the Cassandra/CSV reads and the Neo4j writes.
+ * Each operation handles one batch of {@code rows} records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformBenchmark {
+
+    @Param({"4000"})
+    private int rows;
+
+    private DataMigrationServiceImpl service;
+    private MigrationJob job;
+    private RecordBatch userRecords;
+    private Map<String, List<String>> userRoles;
+    private List<String> profileDetails;
+    private List<List<String>> relations;
+
+    @Setup
+    public void setUp() {
+        service = new DataMigrationServiceImpl();
+        ReflectionTestUtils.setField(service, "migrationMetrics", new MigrationMetrics(new SimpleMeterRegistry()));
+        job = new MigrationJob("benchmark", "benchmark");
+        Random random = SyntheticData.random();
+        List<String> userIds = SyntheticData.userIds(rows, random);
+        List<Map<String, Object>> userRows = SyntheticData.userRows(userIds, random);
+        userRecords = SyntheticData.userRecords(userRows);
+        userRoles = SyntheticData.userRoles(userIds, random);
+        profileDetails = userRows.stream().map(row -> (String) row.get("profiledetails"))
+                .collect(Collectors.toList());
+        relations = SyntheticData.relationRows(userIds, rows, random);
+    }
+
+    @Benchmark
+    public void toValidJsonAndParseRelProps(Blackhole bh) throws Exception {
+        for (List<String> relation : relations) {
+            bh.consume(JsonSupport.MAP_READER.readValue(DataMigrationServiceImpl.toValidJson(relation.get(1))));
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> toRelationRows() {
+        return service.toRelationRows(relations, job);
+    }
+
+    @Benchmark
+    public void extractDesignation(Blackhole bh) {
+        for (String json : profileDetails) {
+            bh.consume(service.extractDesignation(json, "benchmark"));
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> buildNeo4jUpdates() {
+        return service.buildNeo4jUpdates(userRecords, userRoles);
+    }
+}
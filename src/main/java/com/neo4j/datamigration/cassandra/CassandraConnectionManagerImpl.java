@@ -4,9 +4,12 @@ import com.datastax.driver.core.*;
 import com.datastax.driver.core.policies.DefaultRetryPolicy;
 import com.neo4j.datamigration.utils.Constants;
 import com.neo4j.datamigration.utils.PropertiesCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 
@@ -15,6 +18,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntBiFunction;
 
 @Component
 public class CassandraConnectionManagerImpl implements CassandraConnectionManager {
@@ -24,6 +28,9 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
 	List<String> keyspaces = Arrays.asList(Constants.KEYSPACE_SUNBIRD);
 	private Cluster cluster;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
 	@PostConstruct
 	private void addPostConstruct() {
 		logger.info("CassandraConnectionManagerImpl:: Initiating...");
@@ -32,6 +39,7 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
 		for (String keyspace : keyspaces) {
 			getSession(keyspace);
 		}
+		registerPoolGauges();
 		logger.info("CassandraConnectionManagerImpl:: Initiated.");
 	}
 
@@ -48,6 +56,34 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
 		}
 	}
 
+	/**
+	 * Exposes connection pool usage of every session, summed over the connected
+	 * hosts, so saturation of the driver shows up next to the fetch timers.
+	 */
+	private void registerPoolGauges() {
+		for (String keyspace : keyspaces) {
+			Session session = cassandraSessionMap.get(keyspace);
+			Gauge.builder("cassandra.pool.in.flight", session,
+					s -> sumOverHosts(s, Session.State::getInFlightQueries))
+					.tag("keyspace", keyspace).register(meterRegistry);
+			Gauge.builder("cassandra.pool.connections.open", session,
+					s -> sumOverHosts(s, Session.State::getOpenConnections))
+					.tag("keyspace", keyspace).register(meterRegistry);
+			Gauge.builder("cassandra.pool.connections.trashed", session,
+					s -> sumOverHosts(s, Session.State::getTrashedConnections))
+					.tag("keyspace", keyspace).register(meterRegistry);
+		}
+	}
+
+	private static double sumOverHosts(Session session, ToIntBiFunction<Session.State, Host> value) {
+		Session.State state = session.getState();
+		int total = 0;
+		for (Host host : state.getConnectedHosts()) {
+			total += value.applyAsInt(state, host);
+		}
+		return total;
+	}
+
 	private void registerShutDownHook() {
 		Runtime runtime = Runtime.getRuntime();
 		runtime.addShutdownHook(new ResourceCleanUp());
@@ -1,7 +1,12 @@
 package com.neo4j.datamigration.cassandra;
 
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface CassandraOperation {
 
@@ -18,4 +23,63 @@ public interface CassandraOperation {
 	 */
 	List<Map<String, Object>> getRecordsByProperties(String keyspaceName, String tableName,
 			Map<String, Object> propertyMap, List<String> fields);
+
+	/**
+	 * Asynchronous variant of
+	 * {@link #getRecordsByProperties(String, String, Map, List)}. A list value in
+	 * the property map is split into small groups of keys sharing the same
+	 * replica, each sent as its own token-aware request, and the results are
+	 * merged.
+	 *
+	 * @param keyspaceName Keyspace name
+	 * @param tableName    Table name
+	 * @param propertyMap  Map describing columns to be used in where clause of
+	 *                     select query. At most one value may be a list, and it
+	 *                     must be for the partition key.
+	 * @param fields       List of columns to be returned in each record
+	 * @return Future completed with the fetched records of all groups, decoded
+	 *         column-major by column name
+	 */
+	CompletableFuture<RecordBatch> getRecordsByPropertiesAsync(String keyspaceName, String tableName,
+			Map<String, Object> propertyMap, List<String> fields);
+
+	/**
+	 * Split the token ring of the cluster into at least the given number of
+	 * non-wrapping sub-ranges which together cover every partition exactly once.
+	 *
+	 * @param keyspaceName Keyspace name
+	 * @param splits       Minimum number of sub-ranges to return
+	 * @return List of token sub-ranges
+	 */
+	List<TokenRange> getTokenRanges(String keyspaceName, int splits);
+
+	/**
+	 * Page through all records of a table whose partition token lies in the given
+	 * range, using {@code token(partitionKey) > ? AND token(partitionKey) <= ?}.
+	 *
+	 * @param keyspaceName Keyspace name
+	 * @param tableName    Table name
+	 * @param partitionKey Partition key column of the table
+	 * @param fields       List of columns to be returned in each record
+	 * @param range        Non-wrapping token range to scan
+	 * @param pageSize     Number of records handed to the consumer per page
+	 * @param pageConsumer Receives each page along with its token bounds
+	 */
+	void scanTokenRange(String keyspaceName, String tableName, String partitionKey, List<String> fields,
+			TokenRange range, int pageSize, Consumer<TokenPage> pageConsumer);
+
+	/**
+	 * Fetch all records of a table whose partition token lies in
+	 * (startToken, endToken].
+	 *
+	 * @param keyspaceName Keyspace name
+	 * @param tableName    Table name
+	 * @param partitionKey Partition key column of the table
+	 * @param fields       List of columns to be returned in each record
+	 * @param startToken   Exclusive lower bound
+	 * @param endToken     Inclusive upper bound
+	 * @return Fetched records, decoded column-major by column name
+	 */
+	RecordBatch getRecordsByTokenRange(String keyspaceName, String tableName, String partitionKey,
+			List<String> fields, Token startToken, Token endToken);
 }
@@ -1,12 +1,32 @@
 package com.neo4j.datamigration.cassandra;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
 import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.querybuilder.Select.Builder;
 import com.datastax.driver.core.querybuilder.Select.Where;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.neo4j.datamigration.migration.throttle.Throttle;
+import com.neo4j.datamigration.migration.throttle.Throttles;
 import com.neo4j.datamigration.utils.Constants;
+import com.neo4j.datamigration.utils.PropertiesCache;
 import org.apache.commons.collections4.MapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,10 +35,20 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Component
 public class CassandraOperationImpl implements CassandraOperation {
@@ -28,24 +58,270 @@ public class CassandraOperationImpl implements CassandraOperation {
 	@Autowired
 	CassandraConnectionManager connectionManager;
 
+	@Autowired
+	Throttles throttles;
+
+	private final int asyncKeysPerRequest = Integer
+			.parseInt(PropertiesCache.getInstance().getProperty(Constants.ASYNC_KEYS_PER_REQUEST));
+	private final PreparedStatementCache statementCache = new PreparedStatementCache(
+			Integer.parseInt(PropertiesCache.getInstance().getProperty(Constants.PREPARED_STATEMENT_CACHE_SIZE)));
+	private final Map<ColumnDefinitions, RowProjection> projections = Collections
+			.synchronizedMap(new WeakHashMap<>());
+	private final HostInFlightLimiter inFlightLimiter = new HostInFlightLimiter(
+			Integer.parseInt(PropertiesCache.getInstance().getProperty(Constants.ASYNC_MAX_IN_FLIGHT_PER_HOST)));
+
+	@PostConstruct
+	private void registerSchemaChangeListener() {
+		connectionManager.getSession(Constants.KEYSPACE_SUNBIRD).getCluster().register(statementCache);
+	}
+
 	@Override
 	public List<Map<String, Object>> getRecordsByProperties(String keyspaceName, String tableName,
 			Map<String, Object> propertyMap, List<String> fields) {
-		Select selectQuery = null;
 		List<Map<String, Object>> response = new ArrayList<>();
+		Throttle throttle = throttles.getCassandra();
+		throttle.acquire(1, 0);
 		try {
-			selectQuery = processQuery(keyspaceName, tableName, propertyMap, fields);
-			ResultSet results = connectionManager.getSession(keyspaceName).execute(selectQuery);
+			Session session = connectionManager.getSession(keyspaceName);
+			ResultSet results = session.execute(bindQuery(session, keyspaceName, tableName, propertyMap, fields));
 			response = CassandraUtil.createResponse(results);
+			throttle.record(0, response.size());
 		} catch (Exception e) {
 			logger.error(Constants.EXCEPTION_MSG_FETCH + tableName + " : " + e.getMessage(), e);
 		}
 		return response;
 	}
 
-	private Select processQuery(String keyspaceName, String tableName, Map<String, Object> propertyMap,
-			List<String> fields) {
-		Select selectQuery = null;
+	@Override
+	public CompletableFuture<RecordBatch> getRecordsByPropertiesAsync(String keyspaceName, String tableName,
+			Map<String, Object> propertyMap, List<String> fields) {
+		Entry<String, Object> keyEntry = null;
+		for (Entry<String, Object> entry : propertyMap.entrySet()) {
+			if (entry.getValue() instanceof List) {
+				keyEntry = entry;
+				break;
+			}
+		}
+		Session session = connectionManager.getSession(keyspaceName);
+		Throttle throttle = throttles.getCassandra();
+		if (keyEntry == null) {
+			throttle.acquire(1, 0);
+			return executeAsync(session, bindQuery(session, keyspaceName, tableName, propertyMap, fields), tableName);
+		}
+		List<CompletableFuture<RecordBatch>> futures = new ArrayList<>();
+		for (Entry<Host, List<List<Object>>> hostGroups : groupKeysByReplica(session.getCluster(), keyspaceName,
+				(List<?>) keyEntry.getValue()).entrySet()) {
+			for (List<Object> keys : hostGroups.getValue()) {
+				Map<String, Object> groupPropertyMap = new HashMap<>(propertyMap);
+				groupPropertyMap.put(keyEntry.getKey(), keys);
+				// Every key of the group shares its replica with the first one.
+				Statement selectQuery = bindQuery(session, keyspaceName, tableName, groupPropertyMap, fields)
+						.setRoutingKey(serializeKey(session.getCluster(), keys.get(0)));
+				// Rows are counted as they arrive, the throttle only holds back the requests.
+				throttle.acquire(1, 0);
+				futures.add(inFlightLimiter.submit(hostGroups.getKey(),
+						() -> executeAsync(session, selectQuery, tableName)));
+			}
+		}
+		if (futures.isEmpty()) {
+			return CompletableFuture.completedFuture(new RecordBatch(fields, 0));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			RecordBatch first = futures.get(0).join();
+			RecordBatch response = new RecordBatch(first.getFields(),
+					futures.stream().mapToInt(future -> future.join().size()).sum());
+			futures.forEach(future -> response.addAll(future.join()));
+			return response;
+		});
+	}
+
+	/**
+	 * Groups partition keys by their primary replica, in groups of at most
+	 * {@code asyncKeysPerRequest} keys. Keys whose replica is unknown are grouped
+	 * under a null host.
+	 */
+	private Map<Host, List<List<Object>>> groupKeysByReplica(Cluster cluster, String keyspaceName,
+			List<?> keys) {
+		Metadata metadata = cluster.getMetadata();
+		String keyspace = Metadata.quote(keyspaceName);
+		Map<Host, List<List<Object>>> groups = new LinkedHashMap<>();
+		for (Object key : keys) {
+			Set<Host> replicas = metadata.getReplicas(keyspace, serializeKey(cluster, key));
+			Host primary = replicas.isEmpty() ? null : replicas.iterator().next();
+			List<List<Object>> hostGroups = groups.computeIfAbsent(primary, h -> new ArrayList<>());
+			if (hostGroups.isEmpty() || hostGroups.get(hostGroups.size() - 1).size() >= asyncKeysPerRequest) {
+				hostGroups.add(new ArrayList<>(asyncKeysPerRequest));
+			}
+			hostGroups.get(hostGroups.size() - 1).add(key);
+		}
+		return groups;
+	}
+
+	private ByteBuffer serializeKey(Cluster cluster, Object key) {
+		ProtocolVersion protocolVersion = cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+		return CodecRegistry.DEFAULT_INSTANCE.codecFor(key).serialize(key, protocolVersion);
+	}
+
+	private CompletableFuture<RecordBatch> executeAsync(Session session, Statement selectQuery, String tableName) {
+		CompletableFuture<RecordBatch> result = new CompletableFuture<>();
+		collectAsync(session.getCluster(), session.executeAsync(selectQuery), null, result, tableName);
+		return result;
+	}
+
+	/**
+	 * Converts the rows of the current page and chains the fetch of the next page
+	 * so no driver I/O thread ever blocks on paging.
+	 */
+	private void collectAsync(Cluster cluster, ListenableFuture<ResultSet> future, RecordBatch batch,
+			CompletableFuture<RecordBatch> result, String tableName) {
+		Futures.addCallback(future, new FutureCallback<ResultSet>() {
+			@Override
+			public void onSuccess(ResultSet results) {
+				try {
+					RowProjection projection = projection(cluster, results, 0);
+					int available = results.getAvailableWithoutFetching();
+					RecordBatch response = batch != null ? batch : projection.newBatch(available);
+					throttles.getCassandra().record(0, available);
+					for (; available > 0; available--) {
+						projection.decode(results.one(), response);
+					}
+					if (results.isFullyFetched()) {
+						result.complete(response);
+					} else {
+						// Further pages are not held back on the driver thread, only counted.
+						throttles.getCassandra().record(1, 0);
+						collectAsync(cluster, results.fetchMoreResults(), response, result, tableName);
+					}
+				} catch (Exception e) {
+					onFailure(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				logger.error(Constants.EXCEPTION_MSG_FETCH + tableName + " : " + t.getMessage(), t);
+				result.completeExceptionally(t);
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	@Override
+	public List<TokenRange> getTokenRanges(String keyspaceName, int splits) {
+		Metadata metadata = connectionManager.getSession(keyspaceName).getCluster().getMetadata();
+		Set<TokenRange> ringRanges = metadata.getTokenRanges();
+		int splitsPerRange = Math.max(1, (splits + ringRanges.size() - 1) / ringRanges.size());
+		List<TokenRange> ranges = new ArrayList<>();
+		for (TokenRange ringRange : ringRanges) {
+			for (TokenRange split : ringRange.splitEvenly(splitsPerRange)) {
+				ranges.addAll(split.unwrap());
+			}
+		}
+		logger.info("Split token ring of {} ranges into {} sub-ranges", ringRanges.size(), ranges.size());
+		return ranges;
+	}
+
+	@Override
+	public void scanTokenRange(String keyspaceName, String tableName, String partitionKey, List<String> fields,
+			TokenRange range, int pageSize, Consumer<TokenPage> pageConsumer) {
+		Throttle throttle = throttles.getCassandra();
+		throttle.acquire(1, 0);
+		try {
+			Session session = connectionManager.getSession(keyspaceName);
+			ResultSet results = executeTokenRangeQuery(session, keyspaceName, tableName, partitionKey, fields,
+					range.getStart(), range.getEnd(), pageSize);
+			RowProjection projection = projection(session.getCluster(), results, 1);
+			Token pageStart = range.getStart();
+			Token lastToken = null;
+			RecordBatch page = projection.newBatch(pageSize);
+			long fetched = 0;
+			for (Row row : results) {
+				Token token = row.getToken(0);
+				// Never cut a page inside a partition, the next page starts after lastToken.
+				if (page.size() >= pageSize && !token.equals(lastToken)) {
+					pageConsumer.accept(new TokenPage(pageStart, lastToken, page));
+					pageStart = lastToken;
+					page = projection.newBatch(pageSize);
+				}
+				projection.decode(row, page);
+				lastToken = token;
+				// Iterating past the last fetched row fetches the next page.
+				if (results.getAvailableWithoutFetching() == 0) {
+					if (results.isFullyFetched()) {
+						throttle.record(0, fetched + 1);
+					} else {
+						throttle.acquire(1, fetched + 1);
+					}
+					fetched = 0;
+				} else {
+					fetched++;
+				}
+			}
+			if (!page.isEmpty()) {
+				pageConsumer.accept(new TokenPage(pageStart, range.getEnd(), page));
+			}
+		} catch (Exception e) {
+			logger.error(Constants.EXCEPTION_MSG_FETCH + tableName + " for range " + range + " : " + e.getMessage(),
+					e);
+			throw e;
+		}
+	}
+
+	@Override
+	public RecordBatch getRecordsByTokenRange(String keyspaceName, String tableName, String partitionKey,
+			List<String> fields, Token startToken, Token endToken) {
+		Throttle throttle = throttles.getCassandra();
+		throttle.acquire(1, 0);
+		try {
+			Session session = connectionManager.getSession(keyspaceName);
+			ResultSet results = executeTokenRangeQuery(session, keyspaceName, tableName, partitionKey, fields,
+					startToken, endToken, 0);
+			RowProjection projection = projection(session.getCluster(), results, 1);
+			RecordBatch response = projection.newBatch(results.getAvailableWithoutFetching());
+			for (Row row : results) {
+				projection.decode(row, response);
+			}
+			throttle.record(0, response.size());
+			return response;
+		} catch (Exception e) {
+			logger.error(Constants.EXCEPTION_MSG_FETCH + tableName + " for tokens (" + startToken + ", " + endToken
+					+ "] : " + e.getMessage(), e);
+			throw e;
+		}
+	}
+
+	private ResultSet executeTokenRangeQuery(Session session, String keyspaceName, String tableName,
+			String partitionKey, List<String> fields, Token startToken, Token endToken, int fetchSize) {
+		PreparedStatement statement = statementCache.get(session, keyspaceName, tableName,
+				CassandraUtil.getTokenRangeStatement(keyspaceName, tableName, partitionKey, fields));
+		BoundStatement boundStatement = statement.bind().setToken(0, startToken).setToken(1, endToken);
+		if (fetchSize > 0) {
+			boundStatement.setFetchSize(fetchSize);
+		}
+		return session.execute(boundStatement);
+	}
+
+	/**
+	 * Returns the decoder for the statement shape of the result. Results of a
+	 * prepared statement share its result metadata instance, so each shape is
+	 * compiled once and dropped along with its statement.
+	 *
+	 * @param firstColumn Index of the first column to decode
+	 */
+	private RowProjection projection(Cluster cluster, ResultSet results, int firstColumn) {
+		return projections.computeIfAbsent(results.getColumnDefinitions(),
+				definitions -> new RowProjection(definitions, firstColumn,
+						cluster.getConfiguration().getCodecRegistry(),
+						cluster.getConfiguration().getProtocolOptions().getProtocolVersion()));
+	}
+
+	/**
+	 * Builds the select with a bind marker per where-clause column, a list value
+	 * being bound to a single {@code IN ?} marker, and binds the values to the
+	 * cached prepared statement. Columns are sorted so the same shape always
+	 * produces the same CQL text.
+	 */
+	private BoundStatement bindQuery(Session session, String keyspaceName, String tableName,
+			Map<String, Object> propertyMap, List<String> fields) {
 		Builder selectBuilder;
 		if (!CollectionUtils.isEmpty(fields)) {
 			String[] dbFields = fields.toArray(new String[fields.size()]);
@@ -53,24 +329,24 @@ public class CassandraOperationImpl implements CassandraOperation {
 		} else {
 			selectBuilder = QueryBuilder.select().all();
 		}
-		selectQuery = selectBuilder.from(keyspaceName, tableName);
+		Select selectQuery = selectBuilder.from(keyspaceName, tableName);
+		List<Object> values = new ArrayList<>();
 		if (MapUtils.isNotEmpty(propertyMap)) {
 			Where selectWhere = selectQuery.where();
-			for (Entry<String, Object> entry : propertyMap.entrySet()) {
+			for (Entry<String, Object> entry : new TreeMap<>(propertyMap).entrySet()) {
+				Clause clause;
 				if (entry.getValue() instanceof List) {
-					List<Object> list = (List) entry.getValue();
-					if (null != list) {
-						Object[] propertyValues = list.toArray(new Object[list.size()]);
-						Clause clause = QueryBuilder.in(entry.getKey(), propertyValues);
-						selectWhere.and(clause);
-					}
+					clause = QueryBuilder.in(entry.getKey(), QueryBuilder.bindMarker());
 				} else {
-					Clause clause = QueryBuilder.eq(entry.getKey(), entry.getValue());
-					selectWhere.and(clause);
+					clause = QueryBuilder.eq(entry.getKey(), QueryBuilder.bindMarker());
 				}
+				selectWhere.and(clause);
+				values.add(entry.getValue());
 			}
 		}
-		return selectQuery;
+		PreparedStatement statement = statementCache.get(session, keyspaceName, tableName,
+				selectQuery.getQueryString());
+		return statement.bind(values.toArray());
 	}
 
 }
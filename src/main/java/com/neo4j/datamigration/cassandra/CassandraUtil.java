@@ -55,6 +55,27 @@ public final class CassandraUtil {
 		return responseList;
 	}
 
+	/**
+	 * @param keyspaceName Keyspace name
+	 * @param tableName    Table name
+	 * @param partitionKey Partition key column
+	 * @param fields       Columns to select, all if empty
+	 * @return Select query with two bind markers for the exclusive start and
+	 *         inclusive end token. The first selected column is the partition
+	 *         token.
+	 */
+	public static String getTokenRangeStatement(String keyspaceName, String tableName, String partitionKey,
+			List<String> fields) {
+		String token = Constants.TOKEN + Constants.OPEN_BRACE + partitionKey + Constants.CLOSE_BRACE;
+		StringBuilder query = new StringBuilder(Constants.SELECT);
+		query.append(token).append(Constants.COMMA);
+		query.append(fields == null || fields.isEmpty() ? "*" : String.join(Constants.COMMA, fields));
+		query.append(Constants.FROM).append(keyspaceName).append(Constants.DOT).append(tableName);
+		query.append(Constants.WHERE).append(token).append(" > ").append(Constants.QUE_MARK);
+		query.append(Constants.AND).append(token).append(" <= ").append(Constants.QUE_MARK);
+		return query.toString();
+	}
+
 	public static Map<String, Object> createResponse(ResultSet results, String key) {
 		Map<String, Object> responseList = new HashMap<>();
 		Map<String, String> columnsMapping = fetchColumnsMapping(results);
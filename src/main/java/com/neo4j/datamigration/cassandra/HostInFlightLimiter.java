@@ -0,0 +1,117 @@
+package com.neo4j.datamigration.cassandra;
+
+import com.datastax.driver.core.Host;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous requests in flight per Cassandra host.
+ * Requests above the limit are queued without blocking the caller and started
+ * as earlier requests to the same host complete.
+ */
+public class HostInFlightLimiter {
+
+	private final int maxInFlightPerHost;
+	private final Map<Host, HostQueue> hostQueues = new ConcurrentHashMap<>();
+	private final HostQueue unknownHostQueue;
+
+	public HostInFlightLimiter(int maxInFlightPerHost) {
+		this.maxInFlightPerHost = maxInFlightPerHost;
+		this.unknownHostQueue = new HostQueue(maxInFlightPerHost);
+	}
+
+	/**
+	 * @param host    Replica the request will be routed to, null if unknown
+	 * @param request Starts the request when a slot is free
+	 * @return Future completed with the result of the request
+	 */
+	public <T> CompletableFuture<T> submit(Host host, Supplier<CompletableFuture<T>> request) {
+		HostQueue queue = host == null ? unknownHostQueue
+				: hostQueues.computeIfAbsent(host, h -> new HostQueue(maxInFlightPerHost));
+		CompletableFuture<T> result = new CompletableFuture<>();
+		queue.submit(() -> {
+			CompletableFuture<T> future;
+			try {
+				future = request.get();
+			} catch (Exception e) {
+				future = new CompletableFuture<>();
+				future.completeExceptionally(e);
+			}
+			future.whenComplete((value, error) -> {
+				queue.release();
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * Requests are started by whichever thread submits or releases first, in a
+	 * loop rather than recursively, since a request that completes at once
+	 * releases its slot on the same thread before start returns.
+	 */
+	private static class HostQueue {
+		private final int maxInFlight;
+		private final Deque<Runnable> pending = new ArrayDeque<>();
+		private int inFlight;
+		private boolean draining;
+
+		HostQueue(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+		void submit(Runnable start) {
+			synchronized (this) {
+				pending.add(start);
+			}
+			drain();
+		}
+
+		void release() {
+			synchronized (this) {
+				inFlight--;
+			}
+			drain();
+		}
+
+		private void drain() {
+			synchronized (this) {
+				if (draining) {
+					return;
+				}
+				draining = true;
+			}
+			boolean done = false;
+			try {
+				while (true) {
+					Runnable next;
+					synchronized (this) {
+						if (inFlight >= maxInFlight || pending.isEmpty()) {
+							draining = false;
+							done = true;
+							return;
+						}
+						next = pending.poll();
+						inFlight++;
+					}
+					next.run();
+				}
+			} finally {
+				if (!done) {
+					synchronized (this) {
+						draining = false;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.neo4j.datamigration.cassandra;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.SchemaChangeListenerBase;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of prepared statements keyed by their CQL text, which is
+ * fully determined by keyspace, table, projection and where-clause shape since
+ * all values are bind markers. Entries of a table are dropped when the driver
+ * reports a schema change on it, so the next use prepares against the new
+ * schema.
+ */
+public class PreparedStatementCache extends SchemaChangeListenerBase {
+
+	private Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+	private final Map<String, CachedStatement> statements;
+
+	public PreparedStatementCache(int maxSize) {
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param session      Session to prepare on if the statement is not cached
+	 * @param keyspaceName Keyspace the statement reads from
+	 * @param tableName    Table the statement reads from
+	 * @param query        CQL with bind markers
+	 * @return Prepared statement for the query
+	 */
+	public PreparedStatement get(Session session, String keyspaceName, String tableName, String query) {
+		CachedStatement cached;
+		synchronized (statements) {
+			cached = statements.get(query);
+		}
+		if (cached != null) {
+			return cached.statement;
+		}
+		// Prepared outside the lock, a concurrent duplicate prepare is harmless.
+		PreparedStatement statement = session.prepare(query);
+		synchronized (statements) {
+			statements.put(query, new CachedStatement(keyspaceName, tableName, statement));
+		}
+		return statement;
+	}
+
+	public void invalidate(String keyspaceName, String tableName) {
+		int removed = 0;
+		synchronized (statements) {
+			for (Iterator<CachedStatement> it = statements.values().iterator(); it.hasNext();) {
+				CachedStatement cached = it.next();
+				if (cached.keyspaceName.equalsIgnoreCase(keyspaceName)
+						&& (tableName == null || cached.tableName.equalsIgnoreCase(tableName))) {
+					it.remove();
+					removed++;
+				}
+			}
+		}
+		if (removed > 0) {
+			logger.info("Invalidated {} prepared statements for {}.{}", removed, keyspaceName, tableName);
+		}
+	}
+
+	@Override
+	public void onTableChanged(TableMetadata current, TableMetadata previous) {
+		invalidate(current.getKeyspace().getName(), current.getName());
+	}
+
+	@Override
+	public void onTableRemoved(TableMetadata table) {
+		invalidate(table.getKeyspace().getName(), table.getName());
+	}
+
+	@Override
+	public void onKeyspaceRemoved(KeyspaceMetadata keyspace) {
+		invalidate(keyspace.getName(), null);
+	}
+
+	private static class CachedStatement {
+		private final String keyspaceName;
+		private final String tableName;
+		private final PreparedStatement statement;
+
+		CachedStatement(String keyspaceName, String tableName, PreparedStatement statement) {
+			this.keyspaceName = keyspaceName;
+			this.tableName = tableName;
+			this.statement = statement;
+		}
+	}
+}
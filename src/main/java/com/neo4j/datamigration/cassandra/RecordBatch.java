@@ -0,0 +1,114 @@
+package com.neo4j.datamigration.cassandra;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records of one query in column-major form: one value array per selected
+ * column instead of a map per row. Fields are column names in select order;
+ * resolve a field to its column index once with {@link #indexOf(String)} and
+ * read values by row and column index.
+ */
+public class RecordBatch {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final List<String> fields;
+	private Object[][] columns;
+	private int capacity;
+	private int size;
+
+	public RecordBatch(List<String> fields, int capacity) {
+		this.fields = fields;
+		this.capacity = Math.max(capacity, DEFAULT_CAPACITY);
+		this.columns = new Object[fields.size()][this.capacity];
+	}
+
+	public List<String> getFields() {
+		return fields;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return Column index of the field, or -1 if it was not selected
+	 */
+	public int indexOf(String field) {
+		for (int i = 0; i < fields.size(); i++) {
+			if (fields.get(i).equalsIgnoreCase(field)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param column Column index, or -1 for a field that was not selected
+	 * @return The value, or null for a column of -1
+	 */
+	public Object get(int row, int column) {
+		return column < 0 ? null : columns[column][row];
+	}
+
+	public String getString(int row, int column) {
+		return (String) get(row, column);
+	}
+
+	/**
+	 * Appends an empty row.
+	 *
+	 * @return Index of the new row
+	 */
+	public int addRow() {
+		if (size == capacity) {
+			grow(size + 1);
+		}
+		return size++;
+	}
+
+	public void set(int row, int column, Object value) {
+		columns[column][row] = value;
+	}
+
+	/**
+	 * Appends the rows of a batch with the same fields.
+	 */
+	public void addAll(RecordBatch other) {
+		if (other.size == 0) {
+			return;
+		}
+		if (size + other.size > capacity) {
+			grow(size + other.size);
+		}
+		for (int c = 0; c < columns.length; c++) {
+			System.arraycopy(other.columns[c], 0, columns[c], size, other.size);
+		}
+		size += other.size;
+	}
+
+	/**
+	 * @return The row as a map of field to value, e.g. for logging
+	 */
+	public Map<String, Object> toMap(int row) {
+		Map<String, Object> map = new HashMap<>();
+		for (int c = 0; c < columns.length; c++) {
+			map.put(fields.get(c), columns[c][row]);
+		}
+		return map;
+	}
+
+	private void grow(int minCapacity) {
+		capacity = Math.max(minCapacity, capacity * 2);
+		for (int c = 0; c < columns.length; c++) {
+			columns[c] = Arrays.copyOf(columns[c], capacity);
+		}
+	}
+}
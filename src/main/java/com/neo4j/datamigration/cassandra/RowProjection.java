@@ -0,0 +1,56 @@
+package com.neo4j.datamigration.cassandra;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoder for the rows of one statement shape, compiled once from its result
+ * metadata: every selected column is resolved to its index and codec up front,
+ * so decoding a row is one codec call per column on the raw bytes, with no
+ * lookup by name and no per-row map.
+ */
+class RowProjection {
+
+	private final List<String> fields;
+	private final int[] indexes;
+	private final TypeCodec<?>[] codecs;
+	private final ProtocolVersion protocolVersion;
+
+	/**
+	 * @param firstColumn Index of the first column to decode, e.g. 1 to leave out
+	 *                    the token column of a token range scan
+	 */
+	RowProjection(ColumnDefinitions definitions, int firstColumn, CodecRegistry codecRegistry,
+			ProtocolVersion protocolVersion) {
+		int count = definitions.size() - firstColumn;
+		List<String> names = new ArrayList<>(count);
+		this.indexes = new int[count];
+		this.codecs = new TypeCodec<?>[count];
+		for (int c = 0; c < count; c++) {
+			int index = firstColumn + c;
+			names.add(definitions.getName(index));
+			indexes[c] = index;
+			codecs[c] = codecRegistry.codecFor(definitions.getType(index));
+		}
+		this.fields = Collections.unmodifiableList(names);
+		this.protocolVersion = protocolVersion;
+	}
+
+	RecordBatch newBatch(int capacity) {
+		return new RecordBatch(fields, capacity);
+	}
+
+	void decode(Row row, RecordBatch batch) {
+		int r = batch.addRow();
+		for (int c = 0; c < indexes.length; c++) {
+			batch.set(r, c, codecs[c].deserialize(row.getBytesUnsafe(indexes[c]), protocolVersion));
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.neo4j.datamigration.cassandra;
+
+import com.datastax.driver.core.Token;
+
+/**
+ * One page of a token range scan. All returned rows have a partition token in
+ * (startToken, endToken], so any other table partitioned by the same key can be
+ * read for exactly the same partitions with the same bounds.
+ */
+public class TokenPage {
+
+	private final Token startToken;
+	private final Token endToken;
+	private final RecordBatch records;
+
+	public TokenPage(Token startToken, Token endToken, RecordBatch records) {
+		this.startToken = startToken;
+		this.endToken = endToken;
+		this.records = records;
+	}
+
+	public Token getStartToken() {
+		return startToken;
+	}
+
+	public Token getEndToken() {
+		return endToken;
+	}
+
+	public RecordBatch getRecords() {
+		return records;
+	}
+}
@@ -0,0 +1,185 @@
+package com.neo4j.datamigration.migration.control;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adjusts the batch size and the number of batches in flight of one job from
+ * what Cassandra and Neo4j report while it runs.
+ * <p>
+ * Overload, i.e. timeouts and unavailable or busy hosts in Cassandra or
+ * transient errors in Neo4j, backs off right away. Otherwise the latency per
+ * row of every call is compared with a slowly moving baseline of the same
+ * source: above latency tolerance times the baseline the source counts as
+ * congested and the limits back off, below it they grow by one step. Cassandra
+ * drives both limits since it serves every batch in flight with one IN query
+ * per batch; Neo4j only drives the batch size since writes run on a fixed
+ * number of threads and a smaller transaction holds its locks for less time.
+ */
+public class AdaptiveController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveController.class);
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final AimdLimit batchSize;
+    private final AimdLimit concurrency;
+    private final double latencyTolerance;
+    private final LatencyGradient cassandraLatency = new LatencyGradient();
+    private final LatencyGradient neo4jLatency = new LatencyGradient();
+    private volatile boolean cassandraCongested;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int inFlight;
+
+    /**
+     * @param latencyTolerance How many times its baseline latency per row a
+     *                         source may take before it counts as congested
+     */
+    public AdaptiveController(AimdLimit batchSize, AimdLimit concurrency, double latencyTolerance) {
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    public int getConcurrency() {
+        return concurrency.get();
+    }
+
+    /**
+     * Blocks until fewer batches than the current concurrency limit are in
+     * flight. Every successful call must be paired with {@link #release()}.
+     *
+     * @throws CancellationException if the calling thread was interrupted while
+     *                               waiting, e.g. by an aborted pipeline
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            while (inFlight >= concurrency.get()) {
+                // The limit can grow without a release, so wait with a timeout.
+                permitReleased.await(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a batch permit");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onCassandraRead(int rows, long durationNanos) {
+        cassandraCongested = cassandraLatency.isCongested(rows, durationNanos, latencyTolerance);
+        if (cassandraCongested) {
+            backOff("Cassandra latency", batchSize, concurrency);
+        } else {
+            grow(concurrency);
+        }
+    }
+
+    public void onCassandraOverload(Throwable cause) {
+        cassandraCongested = true;
+        backOff("Cassandra " + cause.getClass().getSimpleName(), batchSize, concurrency);
+    }
+
+    public void onNeo4jWrite(int rows, long durationNanos) {
+        if (neo4jLatency.isCongested(rows, durationNanos, latencyTolerance)) {
+            backOff("Neo4j latency", batchSize);
+        } else if (!cassandraCongested) {
+            grow(batchSize);
+        }
+    }
+
+    public void onNeo4jOverload(Throwable cause) {
+        backOff("Neo4j " + cause.getClass().getSimpleName(), batchSize);
+    }
+
+    /**
+     * @return Current limits and latencies, for the job status
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("batchSize", batchSize.get());
+        state.put("concurrency", concurrency.get());
+        lock.lock();
+        try {
+            state.put("inFlight", inFlight);
+        } finally {
+            lock.unlock();
+        }
+        state.put("cassandraMicrosPerRow", cassandraLatency.toMap());
+        state.put("neo4jMicrosPerRow", neo4jLatency.toMap());
+        return state;
+    }
+
+    private void grow(AimdLimit limit) {
+        if (limit.increase()) {
+            logger.debug("Increased {} to {}", limit.getName(), limit.get());
+        }
+    }
+
+    private void backOff(String reason, AimdLimit... limits) {
+        for (AimdLimit limit : limits) {
+            if (limit.decrease()) {
+                logger.info("Decreased {} to {} on {}", limit.getName(), limit.get(), reason);
+            }
+        }
+    }
+
+    /**
+     * Short and long term moving averages of the latency per row of one source.
+     * The long term average is the baseline the short term one is compared with.
+     */
+    private static class LatencyGradient {
+
+        private static final double SHORT_TERM_WEIGHT = 0.3;
+        private static final double LONG_TERM_WEIGHT = 0.02;
+        private static final int WARMUP_SAMPLES = 5;
+
+        private double shortTerm;
+        private double longTerm;
+        private int samples;
+
+        synchronized boolean isCongested(int rows, long durationNanos, double tolerance) {
+            double perRow = (double) durationNanos / Math.max(1, rows);
+            if (samples++ == 0) {
+                shortTerm = perRow;
+                longTerm = perRow;
+                return false;
+            }
+            shortTerm += SHORT_TERM_WEIGHT * (perRow - shortTerm);
+            longTerm += LONG_TERM_WEIGHT * (perRow - longTerm);
+            return samples > WARMUP_SAMPLES && shortTerm > tolerance * longTerm;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("current", samples == 0 ? null : Math.round(shortTerm / 1000));
+            latency.put("baseline", samples == 0 ? null : Math.round(longTerm / 1000));
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.neo4j.datamigration.migration.control;
+
+/**
+ * A bounded integer limit adjusted by additive increase and multiplicative
+ * decrease. Decreases are spaced by a cool-down, so a burst of failures from
+ * work that was already in flight when the first one was seen only backs off
+ * once, and no increase happens until the cool-down is over.
+ */
+public class AimdLimit {
+
+    private final String name;
+    private final int min;
+    private final int max;
+    private final int step;
+    private final double backoffRatio;
+    private final long cooldownNanos;
+    private volatile int limit;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    /**
+     * @param step         Added on every increase
+     * @param backoffRatio The limit is multiplied by this on a decrease, e.g. 0.5
+     */
+    public AimdLimit(String name, int min, int max, int initial, int step, double backoffRatio,
+                     long cooldownMillis) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid bounds for " + name + ": " + min + ".." + max);
+        }
+        this.name = name;
+        this.min = min;
+        this.max = max;
+        this.step = Math.max(1, step);
+        this.backoffRatio = backoffRatio;
+        this.cooldownNanos = cooldownMillis * 1_000_000L;
+        this.limit = clamp(initial);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int get() {
+        return limit;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return true if the limit changed, false if it is at its maximum or still
+     *         cooling down from the last decrease
+     */
+    public synchronized boolean increase() {
+        if (isCoolingDown()) {
+            return false;
+        }
+        int next = clamp(limit + step);
+        if (next == limit) {
+            return false;
+        }
+        limit = next;
+        return true;
+    }
+
+    /**
+     * @return true if the limit changed, false if it is at its minimum or still
+     *         cooling down from the previous decrease
+     */
+    public synchronized boolean decrease() {
+        if (isCoolingDown()) {
+            return false;
+        }
+        int next = clamp((int) (limit * backoffRatio));
+        if (next == limit) {
+            return false;
+        }
+        limit = next;
+        decreased = true;
+        lastDecreaseNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * @return true while the last decrease is within the cool-down
+     */
+    public synchronized boolean isCoolingDown() {
+        return decreased && System.nanoTime() - lastDecreaseNanos < cooldownNanos;
+    }
+
+    private int clamp(int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,24 @@
+package com.neo4j.datamigration.migration.controller;
+
+import com.neo4j.datamigration.migration.model.Response;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Error responses shared by all controllers.
+ */
+@ControllerAdvice
+public class ControllerExceptionHandler {
+
+    /**
+     * Invalid request parameters, e.g. an unknown sink or a negative rate.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Response> badRequest(IllegalArgumentException e) {
+        Response response = new Response();
+        response.put("error", e.getMessage());
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+}
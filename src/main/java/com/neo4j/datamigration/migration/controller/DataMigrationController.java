@@ -2,6 +2,7 @@ package com.neo4j.datamigration.migration.controller;
 
 import com.neo4j.datamigration.migration.model.Response;
 import com.neo4j.datamigration.migration.service.DataMigrationService;
+import com.neo4j.datamigration.migration.writer.SinkType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,14 +20,34 @@ public class DataMigrationController {
     private DataMigrationService dataMigrationService;
 
     @PostMapping("/onBoardNewUsers")
-    public ResponseEntity<Response> onBoardNewUsers(@RequestParam("file") MultipartFile file) {
-        Response response = dataMigrationService.onBoardNewUsers(file);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+    public ResponseEntity<Response> onBoardNewUsers(@RequestParam("file") MultipartFile file,
+                                                    @RequestParam(value = "incremental", defaultValue = "false") boolean incremental,
+                                                    @RequestParam(value = "sink", defaultValue = "bolt") String sink) {
+        Response response = dataMigrationService.onBoardNewUsers(file, incremental, SinkType.of(sink));
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/onBoardNewUsersFromPath")
+    public ResponseEntity<Response> onBoardNewUsersFromPath(@RequestParam("path") String path,
+                                                            @RequestParam(value = "incremental", defaultValue = "false") boolean incremental,
+                                                            @RequestParam(value = "sink", defaultValue = "bolt") String sink) {
+        Response response = dataMigrationService.onBoardNewUsersFromPath(path, incremental, SinkType.of(sink));
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
     }
 
     @PostMapping("/updateRelationsUsers")
-    public ResponseEntity<Response> updateRelaionsUsers(@RequestParam("file") MultipartFile file) {
-        Response response = dataMigrationService.updateRelaionsUsers(file);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+    public ResponseEntity<Response> updateRelaionsUsers(@RequestParam("file") MultipartFile file,
+                                                        @RequestParam(value = "parallel", defaultValue = "false") boolean parallel,
+                                                        @RequestParam(value = "sink", defaultValue = "bolt") String sink) {
+        Response response = dataMigrationService.updateRelaionsUsers(file, parallel, SinkType.of(sink));
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/syncAllUsers")
+    public ResponseEntity<Response> syncAllUsers(@RequestParam(value = "splits", defaultValue = "64") int splits,
+                                                 @RequestParam(value = "incremental", defaultValue = "false") boolean incremental,
+                                                 @RequestParam(value = "sink", defaultValue = "bolt") String sink) {
+        Response response = dataMigrationService.syncAllUsers(splits, incremental, SinkType.of(sink));
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
     }
 }
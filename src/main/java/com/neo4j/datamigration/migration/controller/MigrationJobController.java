@@ -0,0 +1,54 @@
+package com.neo4j.datamigration.migration.controller;
+
+import com.neo4j.datamigration.migration.job.JobManager;
+import com.neo4j.datamigration.migration.job.MigrationJob;
+import com.neo4j.datamigration.migration.model.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/datamigration/jobs")
+public class MigrationJobController {
+
+    @Autowired
+    private JobManager jobManager;
+
+    @GetMapping
+    public ResponseEntity<Response> getJobs() {
+        List<Map<String, Object>> jobs = jobManager.getJobs().stream()
+                .map(MigrationJob::toMap)
+                .collect(Collectors.toList());
+        Response response = new Response();
+        response.put("jobs", jobs);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Response> getJob(@PathVariable("jobId") String jobId) {
+        return toResponse(jobManager.getJob(jobId));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<Response> cancelJob(@PathVariable("jobId") String jobId) {
+        return toResponse(jobManager.cancel(jobId));
+    }
+
+    private ResponseEntity<Response> toResponse(MigrationJob job) {
+        if (job == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        Response response = new Response();
+        response.putAll(job.toMap());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,46 @@
+package com.neo4j.datamigration.migration.controller;
+
+import com.neo4j.datamigration.migration.model.Response;
+import com.neo4j.datamigration.migration.throttle.Throttle;
+import com.neo4j.datamigration.migration.throttle.Throttles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/datamigration/throttle")
+public class ThrottleController {
+
+    @Autowired
+    private Throttles throttles;
+
+    @GetMapping
+    public ResponseEntity<Response> getThrottles() {
+        Response response = new Response();
+        response.putAll(throttles.toMap());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * Changes the rates of a target, a rate that is not given is kept and 0
+     * removes the limit.
+     */
+    @PostMapping("/{target}")
+    public ResponseEntity<Response> setThrottle(@PathVariable("target") String target,
+                                                @RequestParam(value = "requestsPerSecond", required = false) Double requestsPerSecond,
+                                                @RequestParam(value = "rowsPerSecond", required = false) Double rowsPerSecond) {
+        Throttle throttle = throttles.setRates(target, requestsPerSecond, rowsPerSecond);
+        if (throttle == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        Response response = new Response();
+        response.put(target, throttle.toMap());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
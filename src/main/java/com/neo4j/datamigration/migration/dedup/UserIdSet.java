@@ -0,0 +1,159 @@
+package com.neo4j.datamigration.migration.dedup;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of user IDs for de-duplicating large inputs. IDs in the canonical
+ * lower-case UUID form are stored as their two 64-bit halves in open-addressing
+ * tables of primitive longs, 16 bytes per ID plus the free slots, instead of
+ * the 100+ bytes of a String in a HashSet. Other IDs, including UUIDs in upper
+ * case, which Cassandra treats as different keys, fall back to a HashSet.
+ * <p>
+ * The table is split into shards by hash, each growing on its own, so growth
+ * never copies more than a small part of the set and no array gets large
+ * enough to need special treatment by the garbage collector.
+ * <p>
+ * Not thread-safe.
+ */
+public class UserIdSet {
+
+    private static final int SHARD_BITS = 6;
+    private static final int INITIAL_SLOTS = 1 << 10;
+    private static final double MAX_LOAD = 0.75;
+
+    private final Shard[] shards = new Shard[1 << SHARD_BITS];
+    private final Set<String> otherIds = new HashSet<>();
+    // The all-zero UUID is the empty slot marker, so it is tracked separately.
+    private boolean containsNilUuid;
+
+    public UserIdSet() {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * @return Whether the ID was not in the set yet
+     */
+    public boolean add(String userId) {
+        if (userId.length() != 36 || !isCanonicalUuid(userId)) {
+            return otherIds.add(userId);
+        }
+        long high = (parseHex(userId, 0, 8) << 32) | (parseHex(userId, 9, 13) << 16) | parseHex(userId, 14, 18);
+        long low = (parseHex(userId, 19, 23) << 48) | parseHex(userId, 24, 36);
+        if (high == 0 && low == 0) {
+            boolean added = !containsNilUuid;
+            containsNilUuid = true;
+            return added;
+        }
+        long hash = mix(high ^ mix(low));
+        return shards[(int) (hash >>> (64 - SHARD_BITS))].add(high, low, hash);
+    }
+
+    public long size() {
+        long size = otherIds.size() + (containsNilUuid ? 1 : 0);
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return Bytes held by the UUID tables, not counting the fallback set
+     */
+    public long tableBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            bytes += (long) shard.slots.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public int otherIdCount() {
+        return otherIds.size();
+    }
+
+    /**
+     * Whether the ID has the form xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx with
+     * lower-case hex digits, so it converts to 128 bits and back unchanged.
+     */
+    private static boolean isCanonicalUuid(String id) {
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String id, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = id.charAt(i);
+            value = (value << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Linear probing table of (high, low) pairs, indexed by the low hash bits.
+     */
+    private static class Shard {
+        private long[] slots = new long[INITIAL_SLOTS * 2];
+        private int size;
+
+        boolean add(long high, long low, long hash) {
+            if (size + 1 > (slots.length / 2) * MAX_LOAD) {
+                grow();
+            }
+            if (!insert(slots, high, low, hash)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] grown = new long[slots.length * 2];
+            for (int i = 0; i < slots.length; i += 2) {
+                long high = slots[i];
+                long low = slots[i + 1];
+                if (high != 0 || low != 0) {
+                    insert(grown, high, low, mix(high ^ mix(low)));
+                }
+            }
+            slots = grown;
+        }
+
+        private static boolean insert(long[] table, long high, long low, long hash) {
+            int mask = table.length / 2 - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long slotHigh = table[slot * 2];
+                long slotLow = table[slot * 2 + 1];
+                if (slotHigh == 0 && slotLow == 0) {
+                    table[slot * 2] = high;
+                    table[slot * 2 + 1] = low;
+                    return true;
+                }
+                if (slotHigh == high && slotLow == low) {
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.neo4j.datamigration.migration.delta;
+
+import com.neo4j.datamigration.utils.Constants;
+import com.neo4j.datamigration.utils.PropertiesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Persistent map of user ID to the fingerprint of what was last written for
+ * the user, kept in a memory-mapped file so it costs no heap and survives
+ * restarts.
+ * <p>
+ * The file is an open addressing hash table with linear probing. Each slot is
+ * 16 bytes: the 64-bit hash of the key, 0 for an empty slot, and the
+ * fingerprint. Only the key hash is stored, so two user IDs with the same hash
+ * share a slot; with 64-bit hashes that takes billions of users to become
+ * likely, and its only effect is an extra or a skipped write of one of them.
+ * The table doubles into a new file once it is three quarters full.
+ */
+@Component
+public class FingerprintStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FingerprintStore.class);
+
+    private static final long MAGIC = 0x4650535430303031L;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_SHIFT;
+    private static final double MAX_LOAD = 0.75;
+
+    private final Path path;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size;
+
+    public FingerprintStore() throws IOException {
+        this(Paths.get(PropertiesCache.getInstance().getProperty(Constants.FINGERPRINT_STORE_PATH)),
+                Long.parseLong(PropertiesCache.getInstance().getProperty(Constants.FINGERPRINT_STORE_CAPACITY)));
+    }
+
+    /**
+     * Opens the store, or creates it with room for the given number of keys.
+     */
+    public FingerprintStore(Path path, long initialCapacity) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.exists(path)) {
+            map(path);
+            logger.info("Opened fingerprint store {} with {} of {} slots used", path, size, capacity);
+        } else {
+            create(path, tableCapacity(initialCapacity));
+            map(path);
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the fingerprint is the one stored for the key
+     */
+    public boolean matches(String key, long fingerprint) {
+        long keyHash = keyHash(key);
+        lock.readLock().lock();
+        try {
+            long slot = find(keyHash);
+            return slotKey(slot) == keyHash && slotValue(slot) == nonZero(fingerprint);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the fingerprint of every item under its key.
+     */
+    public <T> void putAll(List<T> items, Function<T, String> key, ToLongFunction<T> fingerprint) {
+        lock.writeLock().lock();
+        try {
+            for (T item : items) {
+                if (size + 1 > capacity * MAX_LOAD) {
+                    grow();
+                }
+                long keyHash = keyHash(key.apply(item));
+                long slot = find(keyHash);
+                if (slotKey(slot) == 0) {
+                    setSlotKey(slot, keyHash);
+                    size++;
+                }
+                setSlotValue(slot, nonZero(fingerprint.applyAsLong(item)));
+            }
+            header.putLong(24, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow fingerprint store " + path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (segments != null) {
+                header.force();
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                segments = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Slot of the key, or the empty slot where it would be inserted
+     */
+    private long find(long keyHash) {
+        long mask = capacity - 1;
+        long slot = keyHash & mask;
+        while (true) {
+            long stored = slotKey(slot);
+            if (stored == keyHash || stored == 0) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private long slotKey(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong(slotOffset(slot));
+    }
+
+    private long slotValue(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong(slotOffset(slot) + 8);
+    }
+
+    private void setSlotKey(long slot, long keyHash) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong(slotOffset(slot), keyHash);
+    }
+
+    private void setSlotValue(long slot, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong(slotOffset(slot) + 8, value);
+    }
+
+    private static int slotOffset(long slot) {
+        return (int) (slot & (SEGMENT_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * Rehashes into a table of twice the capacity written next to the store,
+     * then moves it over the store.
+     */
+    private void grow() throws IOException {
+        Path grown = path.resolveSibling(path.getFileName() + ".grow");
+        long oldCapacity = capacity;
+        MappedByteBuffer[] oldSegments = segments;
+        create(grown, capacity * 2);
+        map(grown);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            int segment = (int) (slot >>> SEGMENT_SHIFT);
+            long keyHash = oldSegments[segment].getLong(slotOffset(slot));
+            if (keyHash != 0) {
+                long target = find(keyHash);
+                setSlotKey(target, keyHash);
+                setSlotValue(target, oldSegments[segment].getLong(slotOffset(slot) + 8));
+                size++;
+            }
+        }
+        header.putLong(24, size);
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Grew fingerprint store {} to {} slots", path, capacity);
+    }
+
+    private static void create(Path file, long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putLong(16, capacity);
+            buffer.putLong(24, 0);
+            // Extends the file to its full size, sparse until slots are written.
+            channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + capacity * SLOT_SIZE - 1, 1).put(0, (byte) 0);
+        }
+    }
+
+    /**
+     * Maps the header and the slots of the file and reads its capacity and size.
+     */
+    private void map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mappedHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            mappedHeader.order(ByteOrder.LITTLE_ENDIAN);
+            if (mappedHeader.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a fingerprint store");
+            }
+            long mappedCapacity = mappedHeader.getLong(16);
+            if (channel.size() < HEADER_SIZE + mappedCapacity * SLOT_SIZE) {
+                throw new IOException(file + " is truncated");
+            }
+            int segmentCount = (int) ((mappedCapacity + SEGMENT_SLOTS - 1) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] mappedSegments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long slots = Math.min(SEGMENT_SLOTS, mappedCapacity - first);
+                mappedSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * SLOT_SIZE,
+                        slots * SLOT_SIZE);
+                mappedSegments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            header = mappedHeader;
+            segments = mappedSegments;
+            capacity = mappedCapacity;
+            size = mappedHeader.getLong(24);
+        }
+    }
+
+    private static long tableCapacity(long keys) {
+        long slots = (long) Math.ceil(Math.max(keys, 16) / MAX_LOAD);
+        return Long.highestOneBit(slots - 1) << 1;
+    }
+
+    private static long keyHash(String key) {
+        return nonZero(Fingerprints.hash(key));
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
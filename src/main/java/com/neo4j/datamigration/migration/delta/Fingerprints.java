@@ -0,0 +1,66 @@
+package com.neo4j.datamigration.migration.delta;
+
+import java.util.List;
+
+/**
+ * 64-bit hashes of keys and field values: FNV-1a over the UTF-16 code units,
+ * finished with the MurmurHash3 mixer so every input bit affects every output
+ * bit. Not cryptographic; two different values collide with a probability of
+ * about 2^-64.
+ */
+public final class Fingerprints {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final long NULL_MARKER = 0x9e3779b97f4a7c15L;
+
+    private Fingerprints() {
+    }
+
+    public static long hash(String value) {
+        return mix(update(OFFSET_BASIS, value));
+    }
+
+    /**
+     * Hash of the values in order. Null, the empty string and a missing value
+     * all hash differently, and so do lists split at different places.
+     */
+    public static long hash(Object... values) {
+        long h = OFFSET_BASIS;
+        for (Object value : values) {
+            if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                h = step(h, list.size());
+                for (Object element : list) {
+                    h = update(h, element == null ? null : element.toString());
+                }
+            } else {
+                h = update(h, value == null ? null : value.toString());
+            }
+        }
+        return mix(h);
+    }
+
+    private static long update(long h, String value) {
+        if (value == null) {
+            return step(h, NULL_MARKER);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * PRIME;
+        }
+        return step(h, value.length());
+    }
+
+    private static long step(long h, long value) {
+        return (h ^ value) * PRIME;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,353 @@
+package com.neo4j.datamigration.migration.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits a CSV file into byte ranges of roughly the chunk size that start and
+ * end on record boundaries, and parses the ranges in parallel on a fork-join
+ * pool. Boundaries are found with one sequential pass that tracks quoting the
+ * way opencsv's default parser does: a double quote toggles quoting and inside
+ * quotes a backslash escapes the next character, so quoted newlines never end a
+ * record. Each chunk is handed to the parser as soon as its end is found.
+ * <p>
+ * A stream, e.g. a decompressing one, is read the same way into chunks on the
+ * heap, so parsing overlaps with reading the stream. Only a few chunks are
+ * buffered at a time, since the one thread reading the stream rather than the
+ * parsers is usually what limits the throughput.
+ */
+public class ChunkedCsvReader {
+
+    private static final int SCAN_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_BUFFERED_CHUNKS = 4;
+
+    /**
+     * Parses one chunk. Called concurrently for different chunks.
+     */
+    public interface ChunkParser {
+        /**
+         * @param chunk  Records of the chunk, positioned at its first byte
+         * @param offset File offset of the first byte
+         */
+        void parse(ByteBuffer chunk, long offset) throws Exception;
+    }
+
+    private final FileChannel channel;
+    private final StreamChunker stream;
+    private final long chunkSize;
+    private final long size;
+    private final long dataStart;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean aborted;
+
+    /**
+     * @param skipHeader Whether the first record is a header that is not handed
+     *                   to the parser
+     */
+    public ChunkedCsvReader(FileChannel channel, long chunkSize, boolean skipHeader) throws IOException {
+        this.channel = channel;
+        this.stream = null;
+        this.chunkSize = chunkSize;
+        this.size = channel.size();
+        this.dataStart = skipHeader ? new BoundaryScan(0, 1).next() : 0;
+    }
+
+    /**
+     * Reads the header, if any, from the stream; the rest is read by
+     * {@link #read(ForkJoinPool, ChunkParser)}. Up to {@value #MAX_BUFFERED_CHUNKS}
+     * chunks are held on the heap at a time.
+     *
+     * @throws IOException if the stream is empty
+     */
+    public ChunkedCsvReader(InputStream in, int chunkSize, boolean skipHeader) throws IOException {
+        this.channel = null;
+        this.stream = new StreamChunker(in, chunkSize);
+        this.chunkSize = chunkSize;
+        this.size = -1;
+        if (!stream.hasMore()) {
+            throw new IOException("CSV file is empty");
+        }
+        this.dataStart = skipHeader ? stream.next(1).remaining() : 0;
+    }
+
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    /**
+     * Parses every chunk on the pool and returns once all are done.
+     *
+     * @throws Exception The first failure of a parser; the remaining chunks are
+     *                   not started
+     */
+    public void read(ForkJoinPool pool, ChunkParser parser) throws Exception {
+        pool.invoke(stream != null ? new StreamScanTask(parser) : new ScanTask(parser));
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * Stops handing out chunks. Chunks being parsed run to completion unless
+     * their parser gives up.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    private void fail(Exception e) {
+        failure.compareAndSet(null, e);
+        aborted = true;
+    }
+
+    private class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkParser parser;
+
+        private ScanTask(ChunkParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        protected void compute() {
+            List<ForkJoinTask<?>> chunks = new ArrayList<>();
+            try {
+                BoundaryScan scan = new BoundaryScan(dataStart, chunkSize);
+                long start = dataStart;
+                while (start < size && !aborted) {
+                    long end = scan.next();
+                    chunks.add(new ChunkTask(parser, start, end).fork());
+                    start = end;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            for (ForkJoinTask<?> chunk : chunks) {
+                chunk.join();
+            }
+        }
+    }
+
+    private class StreamScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkParser parser;
+
+        private StreamScanTask(ChunkParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        protected void compute() {
+            int maxBuffered = Math.min(MAX_BUFFERED_CHUNKS, getPool().getParallelism() + 1);
+            Deque<ForkJoinTask<?>> chunks = new ArrayDeque<>();
+            try {
+                long start = dataStart;
+                ByteBuffer chunk;
+                while (!aborted && (chunk = stream.next(chunkSize)) != null) {
+                    if (chunks.size() >= maxBuffered) {
+                        // Parses the oldest chunk here if no worker took it yet.
+                        chunks.removeFirst().join();
+                    }
+                    chunks.add(new BufferTask(parser, chunk, start).fork());
+                    start += chunk.remaining();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            for (ForkJoinTask<?> chunk : chunks) {
+                chunk.join();
+            }
+        }
+    }
+
+    private class BufferTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkParser parser;
+        private final ByteBuffer chunk;
+        private final long offset;
+
+        private BufferTask(ChunkParser parser, ByteBuffer chunk, long offset) {
+            this.parser = parser;
+            this.chunk = chunk;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (aborted) {
+                return;
+            }
+            try {
+                parser.parse(chunk, offset);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkParser parser;
+        private final long start;
+        private final long end;
+
+        private ChunkTask(ChunkParser parser, long start, long end) {
+            this.parser = parser;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (aborted) {
+                return;
+            }
+            try {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                parser.parse(chunk, start);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Walks the file once from a record boundary and returns the end of the
+     * first record that ends at least the given distance past the previous
+     * boundary.
+     */
+    private class BoundaryScan {
+        private final long minLength;
+        private long position;
+        private boolean inQuotes;
+        private boolean escaped;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        private BoundaryScan(long start, long minLength) {
+            this.position = start;
+            this.minLength = minLength;
+        }
+
+        private long next() throws IOException {
+            long target = position + minLength;
+            while (position < size) {
+                if (window == null || position >= windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(SCAN_WINDOW_SIZE, size - position));
+                }
+                int limit = window.limit();
+                for (int i = (int) (position - windowStart); i < limit; i++) {
+                    byte b = window.get(i);
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (inQuotes) {
+                        escaped = b == '\\';
+                    } else if (b == '\n' && windowStart + i + 1 >= target) {
+                        position = windowStart + i + 1;
+                        return position;
+                    }
+                }
+                position = windowStart + limit;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Cuts a stream into chunks at record boundaries, tracking quoting like
+     * {@link BoundaryScan}. Every chunk starts on a record boundary, outside of
+     * quotes, so the scan of each chunk starts afresh.
+     */
+    private static class StreamChunker {
+        private final InputStream in;
+        private byte[] buffer;
+        private int length;
+        private boolean eof;
+
+        private StreamChunker(InputStream in, int chunkSize) {
+            this.in = in;
+            // Room for the record that crosses the chunk size, so the buffer rarely grows.
+            this.buffer = new byte[chunkSize + Math.min(chunkSize, 1024 * 1024)];
+        }
+
+        private boolean hasMore() throws IOException {
+            if (length == 0 && !eof) {
+                fill();
+            }
+            return length > 0;
+        }
+
+        /**
+         * @return The bytes up to the end of the first record that ends at
+         *         least the given length in, or up to the end of the stream;
+         *         null at the end of the stream
+         */
+        private ByteBuffer next(long minLength) throws IOException {
+            boolean inQuotes = false;
+            boolean escaped = false;
+            int i = 0;
+            while (true) {
+                for (; i < length; i++) {
+                    byte b = buffer[i];
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (inQuotes) {
+                        escaped = b == '\\';
+                    } else if (b == '\n' && i + 1 >= minLength) {
+                        return take(i + 1);
+                    }
+                }
+                if (eof) {
+                    return length == 0 ? null : take(length);
+                }
+                fill();
+            }
+        }
+
+        /**
+         * Hands the buffer over as the chunk and continues with a new one.
+         */
+        private ByteBuffer take(int chunkLength) {
+            byte[] chunk = buffer;
+            buffer = new byte[chunk.length];
+            System.arraycopy(chunk, chunkLength, buffer, 0, length - chunkLength);
+            length -= chunkLength;
+            return ByteBuffer.wrap(chunk, 0, chunkLength);
+        }
+
+        private void fill() throws IOException {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                eof = true;
+            } else {
+                length += read;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.neo4j.datamigration.migration.io;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression formats of input files, recognized by their magic bytes rather
+ * than the file name. Files of several concatenated members or frames, e.g.
+ * from parallel compressors, are read as one.
+ */
+public enum Compression {
+
+    NONE,
+    GZIP(0x1f, 0x8b),
+    BZIP2('B', 'Z', 'h'),
+    LZ4(0x04, 0x22, 0x4d, 0x18),
+    /** Recognized to fail with a clear message, reading it needs a native library. */
+    ZSTD(0x28, 0xb5, 0x2f, 0xfd);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int[] magic;
+
+    Compression(int... magic) {
+        this.magic = magic;
+    }
+
+    public static Compression detect(Path file) throws IOException {
+        byte[] head = new byte[4];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(head, 0, head.length);
+        }
+        for (Compression compression : values()) {
+            if (compression.magic.length > 0 && compression.matches(head, length)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return Stream of the decompressed content of the compressed stream
+     * @throws IllegalArgumentException if the format cannot be read
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case BZIP2:
+                return new BZip2CompressorInputStream(in, true);
+            case LZ4:
+                return new FramedLZ4CompressorInputStream(in, true);
+            case ZSTD:
+                throw new IllegalArgumentException("zstd input is not supported, compress with gzip, bzip2 or lz4");
+            default:
+                return in;
+        }
+    }
+
+    private boolean matches(byte[] head, int length) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xff) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
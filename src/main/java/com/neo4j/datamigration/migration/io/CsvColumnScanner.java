@@ -0,0 +1,31 @@
+package com.neo4j.datamigration.migration.io;
+
+import java.io.IOException;
+
+/**
+ * Reads the values of a single column of a CSV input one by one, tracking the
+ * byte offset of the uncompressed content so a scan can be resumed.
+ */
+public interface CsvColumnScanner {
+
+    /**
+     * @return Offset of the first data line
+     */
+    long getDataStart();
+
+    /**
+     * @return Offset just past the line of the last returned value
+     */
+    long getOffset();
+
+    /**
+     * Continues scanning at the given offset, which must be the start of a line.
+     */
+    void seek(long offset) throws IOException;
+
+    /**
+     * @return The next non-empty value of the column, or null at the end of the
+     *         input. Lines without the column or with an empty value are skipped.
+     */
+    String nextValue() throws IOException;
+}
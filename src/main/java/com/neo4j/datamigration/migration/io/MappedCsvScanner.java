@@ -0,0 +1,174 @@
+package com.neo4j.datamigration.migration.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a single column of a CSV file through memory-mapped windows of the
+ * file. Lines are scanned as bytes and a String is created only for the value
+ * of the selected column, trimmed. Fields are split on every comma, so the
+ * column must not contain quoted commas.
+ * <p>
+ * {@link #getOffset()} is the byte offset just past the line of the last
+ * returned value, which makes the scan resumable with {@link #seek(long)}.
+ */
+public class MappedCsvScanner implements CsvColumnScanner {
+
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final int columnIndex;
+    private final long dataStart;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    private long offset;
+    private byte[] scratch = new byte[64];
+
+    public MappedCsvScanner(FileChannel channel, String column) throws IOException {
+        this(channel, column, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads the header line and locates the column, ignoring case.
+     *
+     * @throws IOException If the file is empty, has no such column or a line
+     *                     is longer than the window
+     */
+    public MappedCsvScanner(FileChannel channel, String column, int windowSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        if (size == 0) {
+            throw new IOException("CSV file is empty");
+        }
+        int lineEnd = findLineEnd(0);
+        int start = 0;
+        if (lineEnd >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB
+                && window.get(2) == (byte) 0xBF) {
+            start = 3;
+        }
+        String header = decode(start, trimLineBreak(start, lineEnd));
+        String[] headers = header.split(",");
+        int index = -1;
+        for (int i = 0; i < headers.length; i++) {
+            if (column.equalsIgnoreCase(headers[i].trim())) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            throw new IOException("No '" + column + "' column found");
+        }
+        this.columnIndex = index;
+        this.dataStart = nextLineStart(lineEnd);
+        this.offset = dataStart;
+    }
+
+    @Override
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void seek(long offset) {
+        this.offset = offset;
+    }
+
+    @Override
+    public String nextValue() throws IOException {
+        while (offset < size) {
+            int lineEnd = findLineEnd(offset);
+            int lineStart = (int) (offset - windowStart);
+            offset = nextLineStart(lineEnd);
+            int contentEnd = trimLineBreak(lineStart, lineEnd);
+            int fieldStart = lineStart;
+            int column = 0;
+            while (column < columnIndex && fieldStart < contentEnd) {
+                if (window.get(fieldStart++) == ',') {
+                    column++;
+                }
+            }
+            if (column < columnIndex) {
+                continue;
+            }
+            int fieldEnd = fieldStart;
+            while (fieldEnd < contentEnd && window.get(fieldEnd) != ',') {
+                fieldEnd++;
+            }
+            while (fieldStart < fieldEnd && (window.get(fieldStart) & 0xFF) <= ' ') {
+                fieldStart++;
+            }
+            while (fieldEnd > fieldStart && (window.get(fieldEnd - 1) & 0xFF) <= ' ') {
+                fieldEnd--;
+            }
+            if (fieldEnd > fieldStart) {
+                return decode(fieldStart, fieldEnd);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps a window that contains the line starting at the given offset and
+     * returns the window position of its newline, or the window limit for a last
+     * line without one.
+     */
+    private int findLineEnd(long lineOffset) throws IOException {
+        if (window == null || lineOffset < windowStart || lineOffset >= windowStart + windowLimit) {
+            map(lineOffset);
+        }
+        int position = (int) (lineOffset - windowStart);
+        while (true) {
+            for (int i = position; i < windowLimit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            if (windowStart + windowLimit == size) {
+                return windowLimit;
+            }
+            if (windowStart == lineOffset) {
+                throw new IOException("Line at byte " + lineOffset + " is longer than " + windowSize + " bytes");
+            }
+            int scanned = windowLimit - position;
+            map(lineOffset);
+            position = scanned;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        windowLimit = (int) Math.min(windowSize, size - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowLimit);
+    }
+
+    private long nextLineStart(int lineEnd) {
+        return windowStart + Math.min(lineEnd + 1, windowLimit);
+    }
+
+    private int trimLineBreak(int lineStart, int lineEnd) {
+        return lineEnd > lineStart && window.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = window.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+package com.neo4j.datamigration.migration.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream, e.g. a decompressing one, on its own thread into a bounded
+ * queue of chunks, so producing the bytes overlaps with consuming them. At most
+ * {@value #MAX_CHUNKS} chunks of {@value #CHUNK_SIZE} bytes are read ahead.
+ * A failure of the source is thrown by the read that reaches it.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNKS = 4;
+    /** Queued after the last chunk, or after a failure. */
+    private static final byte[] END = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    private final Thread reader;
+    private volatile IOException failure;
+    private byte[] current;
+    private int position;
+
+    /**
+     * Starts reading the source.
+     *
+     * @param name Name of the reading thread
+     */
+    public ReadAheadInputStream(InputStream source, String name) {
+        this.source = source;
+        this.reader = new Thread(this::readAhead, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead() {
+        try {
+            int length;
+            do {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                length = readFully(chunk);
+                if (length > 0) {
+                    chunks.put(length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length));
+                }
+            } while (length == CHUNK_SIZE);
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // Closed by the consumer.
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            // Closed by the consumer.
+        }
+    }
+
+    private int readFully(byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = source.read(chunk, length, chunk.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int length = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * @return false at the end of the stream
+     */
+    private boolean nextChunk() throws IOException {
+        while (current == null || position == current.length) {
+            if (current == END) {
+                return false;
+            }
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + reader.getName());
+            }
+            position = 0;
+            if (current == END && failure != null) {
+                throw new IOException("Failed to read ahead in " + reader.getName(), failure);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the reading thread and closes the source.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+}
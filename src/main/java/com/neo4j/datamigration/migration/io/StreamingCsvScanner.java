@@ -0,0 +1,177 @@
+package com.neo4j.datamigration.migration.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a single column of a CSV stream, e.g. a decompressing one, with the
+ * same rules as {@link MappedCsvScanner}. Offsets count the bytes read from the
+ * stream, so they match the offsets of the uncompressed file. The stream can
+ * only be read once, so {@link #seek(long)} only skips forward.
+ */
+public class StreamingCsvScanner implements CsvColumnScanner {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final InputStream in;
+    private final int columnIndex;
+    private final long dataStart;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /** Stream offset of the first byte of the buffer. */
+    private long bufferStart;
+    private int position;
+    private int limit;
+    private boolean eof;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * Reads the header line and locates the column, ignoring case.
+     *
+     * @throws IOException If the stream is empty or has no such column
+     */
+    public StreamingCsvScanner(InputStream in, String column) throws IOException {
+        this.in = in;
+        if (!nextLine()) {
+            throw new IOException("CSV file is empty");
+        }
+        int start = lineStart;
+        if (lineEnd - lineStart >= 3 && buffer[start] == (byte) 0xEF && buffer[start + 1] == (byte) 0xBB
+                && buffer[start + 2] == (byte) 0xBF) {
+            start += 3;
+        }
+        String header = new String(buffer, start, trimLineBreak() - start, StandardCharsets.UTF_8);
+        String[] headers = header.split(",");
+        int index = -1;
+        for (int i = 0; i < headers.length; i++) {
+            if (column.equalsIgnoreCase(headers[i].trim())) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            throw new IOException("No '" + column + "' column found");
+        }
+        this.columnIndex = index;
+        this.dataStart = getOffset();
+    }
+
+    @Override
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    @Override
+    public long getOffset() {
+        return bufferStart + position;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the offset is before the current one
+     */
+    @Override
+    public void seek(long offset) throws IOException {
+        if (offset < getOffset()) {
+            throw new IllegalArgumentException("Cannot seek back to " + offset + " from " + getOffset());
+        }
+        while (getOffset() < offset) {
+            if (position == limit) {
+                if (eof) {
+                    return;
+                }
+                fill();
+            }
+            position += (int) Math.min(limit - position, offset - getOffset());
+        }
+    }
+
+    @Override
+    public String nextValue() throws IOException {
+        while (nextLine()) {
+            int contentEnd = trimLineBreak();
+            int fieldStart = lineStart;
+            int column = 0;
+            while (column < columnIndex && fieldStart < contentEnd) {
+                if (buffer[fieldStart++] == ',') {
+                    column++;
+                }
+            }
+            if (column < columnIndex) {
+                continue;
+            }
+            int fieldEnd = fieldStart;
+            while (fieldEnd < contentEnd && buffer[fieldEnd] != ',') {
+                fieldEnd++;
+            }
+            while (fieldStart < fieldEnd && (buffer[fieldStart] & 0xFF) <= ' ') {
+                fieldStart++;
+            }
+            while (fieldEnd > fieldStart && (buffer[fieldEnd - 1] & 0xFF) <= ' ') {
+                fieldEnd--;
+            }
+            if (fieldEnd > fieldStart) {
+                return new String(buffer, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Buffers the next line whole and moves past it.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean nextLine() throws IOException {
+        int scanned = position;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    lineStart = position;
+                    lineEnd = i;
+                    position = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (position == limit) {
+                    return false;
+                }
+                lineStart = position;
+                lineEnd = limit;
+                position = limit;
+                return true;
+            }
+            scanned = limit - position;
+            fill();
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, growing it if they
+     * fill it, and reads more of the stream after them.
+     */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferStart += position;
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private int trimLineBreak() {
+        return lineEnd > lineStart && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+}
@@ -0,0 +1,200 @@
+package com.neo4j.datamigration.migration.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only record of the byte ranges of an input file whose batches have
+ * been written, one journal per input and destination, so a run
+ * writing the same input elsewhere starts from the beginning. Each record is a
+ * "start end" line. Records are fsynced in groups, every syncEvery records or
+ * syncIntervalMillis, whichever comes first, so a crash loses at most the last
+ * group, and those batches are simply written again on resume.
+ */
+public class CheckpointJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointJournal.class);
+    private static final int SAMPLE_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final long syncIntervalMillis;
+    /** Completed ranges merged into non-overlapping start to end entries. */
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+    private int unsynced;
+    private long lastSync = System.currentTimeMillis();
+
+    private CheckpointJournal(Path path, int syncEvery, long syncIntervalMillis) throws IOException {
+        this.path = path;
+        this.syncEvery = syncEvery;
+        this.syncIntervalMillis = syncIntervalMillis;
+        if (Files.exists(path)) {
+            load();
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Opens, or creates, the journal of the input with the given hash written to
+     * the given destination.
+     *
+     * @param inputHash   Identifies the input, see {@link #inputHash(Path)}
+     * @param destination Sink and location the batches are written to, e.g.
+     *                    the database URL or the import file directory
+     */
+    public static CheckpointJournal open(Path directory, String inputHash, String destination, int syncEvery,
+                                         long syncIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        MessageDigest digest = sha256();
+        digest.update(destination.getBytes(StandardCharsets.UTF_8));
+        // A prefix of the destination hash keeps the names short, the input hash identifies the input.
+        String name = inputHash + "-" + hex(digest.digest()).substring(0, 16) + ".journal";
+        return new CheckpointJournal(directory.resolve(name), syncEvery, syncIntervalMillis);
+    }
+
+    /**
+     * Hashes the size and the first and last MB of the file rather than all of
+     * it, so large inputs are not read once more before the first batch. The
+     * modification time is left out since uploads are staged to a new file for
+     * every run. A file only changed in between keeps its journal.
+     *
+     * @return Hex SHA-256 of the size and the sampled content
+     */
+    public static String inputHash(Path input) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            sample(channel, 0, buffer, digest);
+            if (size > SAMPLE_SIZE) {
+                sample(channel, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE), buffer, digest);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static void sample(FileChannel channel, long position, ByteBuffer buffer, MessageDigest digest)
+            throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer, position + buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        buffer.flip();
+        digest.update(buffer);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void load() throws IOException {
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] range = line.trim().split(" ");
+                try {
+                    addRange(Long.parseLong(range[0]), Long.parseLong(range[1]));
+                    records++;
+                } catch (RuntimeException e) {
+                    // A torn last record from a crash mid-write, the batch is simply redone.
+                    logger.warn("Ignoring malformed checkpoint record '{}' in {}", line, path);
+                }
+            }
+        }
+        logger.info("Loaded {} checkpoint records from {}", records, path);
+    }
+
+    private void addRange(long start, long end) {
+        Map.Entry<Long, Long> before = completed.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> after = completed.ceilingEntry(start);
+        while (after != null && after.getKey() <= end) {
+            end = Math.max(end, after.getValue());
+            completed.remove(after.getKey());
+            after = completed.ceilingEntry(start);
+        }
+        completed.put(start, end);
+    }
+
+    /**
+     * @param dataStart Offset of the first data row
+     * @return Offset of the first byte not covered by completed batches
+     */
+    public synchronized long resumeOffset(long dataStart) {
+        Map.Entry<Long, Long> range = completed.floorEntry(dataStart);
+        if (range != null && range.getValue() >= dataStart) {
+            return range.getValue();
+        }
+        return dataStart;
+    }
+
+    public synchronized boolean isCompleted(long start, long end) {
+        Map.Entry<Long, Long> range = completed.floorEntry(start);
+        return range != null && range.getValue() >= end;
+    }
+
+    public synchronized void markCompleted(long start, long end) throws IOException {
+        addRange(start, end);
+        ByteBuffer record = ByteBuffer.wrap((start + " " + end + "\n").getBytes(StandardCharsets.UTF_8));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        unsynced++;
+        long now = System.currentTimeMillis();
+        if (unsynced >= syncEvery || now - lastSync >= syncIntervalMillis) {
+            channel.force(false);
+            unsynced = 0;
+            lastSync = now;
+        }
+    }
+
+    /**
+     * Closes and removes the journal once the whole input has been written.
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
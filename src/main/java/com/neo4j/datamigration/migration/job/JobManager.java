@@ -0,0 +1,115 @@
+package com.neo4j.datamigration.migration.job;
+
+import com.neo4j.datamigration.utils.Constants;
+import com.neo4j.datamigration.utils.PropertiesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs migration jobs in the background so requests return a job ID at once.
+ * At most job.max.concurrent jobs run at the same time, the rest wait in
+ * submission order. The last job.history.size finished jobs are kept for status
+ * queries.
+ */
+@Component
+public class JobManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobManager.class);
+
+    private final int historySize = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.JOB_HISTORY_SIZE));
+    private final Map<String, MigrationJob> jobs = new LinkedHashMap<>();
+    private final ExecutorService executor;
+
+    public JobManager() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(
+                Integer.parseInt(PropertiesCache.getInstance().getProperty(Constants.JOB_MAX_CONCURRENT)),
+                runnable -> new Thread(runnable, "migrationJob-" + counter.incrementAndGet()));
+    }
+
+    @FunctionalInterface
+    public interface JobTask {
+        void run(MigrationJob job) throws Exception;
+    }
+
+    public MigrationJob submit(String type, JobTask task) {
+        MigrationJob job = new MigrationJob(UUID.randomUUID().toString(), type);
+        synchronized (jobs) {
+            jobs.put(job.getJobId(), job);
+            evictFinishedJobs();
+        }
+        executor.submit(() -> run(job, task));
+        logger.info("Submitted {} job {}", type, job.getJobId());
+        return job;
+    }
+
+    public MigrationJob getJob(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    public List<MigrationJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    public MigrationJob cancel(String jobId) {
+        MigrationJob job = getJob(jobId);
+        if (job != null) {
+            logger.info("Cancelling job {}", jobId);
+            job.cancel();
+        }
+        return job;
+    }
+
+    private void run(MigrationJob job, JobTask task) {
+        if (job.isCancelRequested()) {
+            job.markFinished(JobState.CANCELLED, null);
+            return;
+        }
+        job.markRunning();
+        try {
+            task.run(job);
+            job.markFinished(job.isCancelRequested() ? JobState.CANCELLED : JobState.COMPLETED, null);
+            logger.info("Job {} finished: {}", job.getJobId(), job.getState());
+        } catch (CancellationException e) {
+            job.markFinished(JobState.CANCELLED, e.getMessage());
+            logger.info("Job {} cancelled", job.getJobId());
+        } catch (Exception e) {
+            job.markFinished(JobState.FAILED, e.getMessage());
+            logger.error("Job {} failed: {}", job.getJobId(), e.getMessage(), e);
+        }
+    }
+
+    private void evictFinishedJobs() {
+        long finished = jobs.values().stream().filter(MigrationJob::isFinished).count();
+        for (Iterator<MigrationJob> it = jobs.values().iterator(); it.hasNext() && finished > historySize;) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        getJobs().forEach(MigrationJob::cancel);
+        executor.shutdownNow();
+    }
+}
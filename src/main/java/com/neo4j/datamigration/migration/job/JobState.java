@@ -0,0 +1,5 @@
+package com.neo4j.datamigration.migration.job;
+
+public enum JobState {
+    QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+}
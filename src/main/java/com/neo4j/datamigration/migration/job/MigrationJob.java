@@ -0,0 +1,189 @@
+package com.neo4j.datamigration.migration.job;
+
+import com.neo4j.datamigration.migration.pipeline.StageListener;
+
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * State and progress of one migration run. Counters are updated by the
+ * pipeline threads and read by status requests without locking.
+ * <p>
+ * Progress is tracked in whatever unit the job knows its total in, e.g. bytes
+ * of the input file or token ranges of a scan, and is only used for the ETA.
+ */
+public class MigrationJob implements StageListener {
+
+    private final String jobId;
+    private final String type;
+    private final long submittedAt = System.currentTimeMillis();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile JobState state = JobState.QUEUED;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong progress = new AtomicLong();
+    private volatile long progressTotal;
+
+    private final ThroughputMeter throughput = new ThroughputMeter();
+    private final Map<String, LatencyHistogram> stageLatencies = new ConcurrentHashMap<>();
+    private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+    private final Map<String, Supplier<?>> statusSources = new ConcurrentHashMap<>();
+
+    public MigrationJob(String jobId, String type) {
+        this.jobId = jobId;
+        this.type = type;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public JobState getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return finishedAt > 0;
+    }
+
+    public void addRead(long rows) {
+        rowsRead.addAndGet(rows);
+    }
+
+    public void addFetched(long rows) {
+        rowsFetched.addAndGet(rows);
+    }
+
+    public void addWritten(long rows) {
+        rowsWritten.addAndGet(rows);
+        throughput.record(rows);
+    }
+
+    public void addSkipped(long rows) {
+        rowsSkipped.addAndGet(rows);
+    }
+
+    public void addFailed(long rows) {
+        rowsFailed.addAndGet(rows);
+    }
+
+    public void setProgressTotal(long total) {
+        this.progressTotal = total;
+    }
+
+    public void setProgress(long done) {
+        progress.set(done);
+    }
+
+    public void addProgress(long done) {
+        progress.addAndGet(done);
+    }
+
+    @Override
+    public void onItemProcessed(String stageName, long durationNanos) {
+        stageLatencies.computeIfAbsent(stageName, name -> new LatencyHistogram()).record(durationNanos);
+    }
+
+    /**
+     * Adds a value to the status that is computed on every status request, e.g.
+     * the current limits of an adaptive controller of the job.
+     */
+    public void addStatus(String name, Supplier<?> value) {
+        statusSources.put(name, value);
+    }
+
+    /**
+     * Registers an action that stops the running work, e.g. aborting its
+     * pipeline. Runs immediately if the job was already cancelled.
+     */
+    public void onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (cancelRequested) {
+            hook.run();
+        }
+    }
+
+    public void cancel() {
+        if (isFinished()) {
+            return;
+        }
+        cancelRequested = true;
+        cancelHooks.forEach(Runnable::run);
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * For sequential loops that have no pipeline to abort.
+     *
+     * @throws CancellationException if the job was cancelled
+     */
+    public void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("Job " + jobId + " was cancelled");
+        }
+    }
+
+    void markRunning() {
+        startedAt = System.currentTimeMillis();
+        state = JobState.RUNNING;
+    }
+
+    void markFinished(JobState finalState, String errorMessage) {
+        error = errorMessage;
+        finishedAt = System.currentTimeMillis();
+        state = finalState;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", jobId);
+        status.put("type", type);
+        status.put("state", state);
+        status.put("submittedAt", submittedAt);
+        status.put("startedAt", startedAt > 0 ? startedAt : null);
+        status.put("finishedAt", finishedAt > 0 ? finishedAt : null);
+        long elapsedMillis = startedAt == 0 ? 0 : (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+        status.put("elapsedSeconds", elapsedMillis / 1000);
+        status.put("rowsRead", rowsRead.get());
+        status.put("rowsFetched", rowsFetched.get());
+        status.put("rowsWritten", rowsWritten.get());
+        status.put("rowsSkipped", rowsSkipped.get());
+        status.put("rowsFailed", rowsFailed.get());
+        status.put("rowsPerSecond", state == JobState.RUNNING ? throughput.ratePerSecond() : 0);
+        long done = progress.get();
+        long total = progressTotal;
+        status.put("progressPercent", total > 0 ? Math.min(100.0, done * 100.0 / total) : null);
+        Long etaSeconds = null;
+        if (state == JobState.RUNNING && total > 0 && done > 0) {
+            etaSeconds = elapsedMillis * Math.max(0, total - done) / done / 1000;
+        }
+        status.put("etaSeconds", etaSeconds);
+        Map<String, Object> latencies = new TreeMap<>();
+        stageLatencies.forEach((stage, histogram) -> latencies.put(stage, histogram.toMap()));
+        status.put("stageLatencies", latencies);
+        statusSources.forEach((name, value) -> status.put(name, value.get()));
+        status.put("error", error);
+        return status;
+    }
+}
@@ -0,0 +1,47 @@
+package com.neo4j.datamigration.migration.job;
+
+/**
+ * Rows per second over a sliding window of the last few whole seconds.
+ */
+public class ThroughputMeter {
+
+    private static final int WINDOW_SECONDS = 10;
+
+    private final long[] rows = new long[WINDOW_SECONDS];
+    private final long[] seconds = new long[WINDOW_SECONDS];
+    private final long startSecond = currentSecond();
+
+    public synchronized void record(long count) {
+        long second = currentSecond();
+        int slot = (int) (second % WINDOW_SECONDS);
+        if (seconds[slot] != second) {
+            seconds[slot] = second;
+            rows[slot] = 0;
+        }
+        rows[slot] += count;
+    }
+
+    /**
+     * The current, partial second is excluded so the rate does not dip at the
+     * start of every second.
+     */
+    public synchronized double ratePerSecond() {
+        long now = currentSecond();
+        long window = Math.min(WINDOW_SECONDS - 1, now - startSecond);
+        if (window <= 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            long age = now - seconds[i];
+            if (age >= 1 && age <= window) {
+                total += rows[i];
+            }
+        }
+        return (double) total / window;
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
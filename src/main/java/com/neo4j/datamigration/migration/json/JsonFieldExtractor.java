@@ -0,0 +1,134 @@
+package com.neo4j.datamigration.migration.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls a fixed set of scalar fields out of a JSON document in one streaming
+ * pass, without building a tree. Paths are dot separated field names, e.g.
+ * {@code professionalDetails.designation}; where a path step holds an array,
+ * its first element is used. Everything off the paths is skipped, and parsing
+ * stops once every path has been resolved.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class JsonFieldExtractor {
+
+    private final JsonFactory factory;
+    private final Node root = new Node();
+    private final int size;
+
+    public JsonFieldExtractor(JsonFactory factory, List<String> paths) {
+        this.factory = factory;
+        this.size = paths.size();
+        for (int i = 0; i < paths.size(); i++) {
+            Node node = root;
+            for (String step : paths.get(i).trim().split("\\.")) {
+                node = node.child(step);
+            }
+            node.index = i;
+        }
+    }
+
+    /**
+     * @return Values in path order; null where the path is absent, null or not
+     *         a scalar
+     * @throws IOException If the document is not valid JSON up to the point
+     *                     where the last path was resolved
+     */
+    public String[] extract(String json) throws IOException {
+        Extraction extraction = new Extraction(size);
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != null) {
+                read(parser, root, extraction);
+            }
+        }
+        return extraction.values;
+    }
+
+    /**
+     * @return The value of the first path that resolves to a non-null scalar
+     */
+    public String extractFirst(String json) throws IOException {
+        for (String value : extract(json)) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the value the parser is positioned at. Returns with the parser on
+     * the last token of that value, or anywhere once all paths are resolved.
+     */
+    private void read(JsonParser parser, Node node, Extraction extraction) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (node.index >= 0 && token.isScalarValue()) {
+            if (token != JsonToken.VALUE_NULL) {
+                extraction.values[node.index] = parser.getText();
+            }
+            extraction.missing--;
+            return;
+        }
+        if (node.children == null) {
+            if (node.index >= 0) {
+                extraction.missing--;
+            }
+            parser.skipChildren();
+            return;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Node child = node.children.get(parser.getCurrentName());
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                read(parser, child, extraction);
+                if (extraction.missing == 0) {
+                    return;
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                read(parser, node, extraction);
+                if (extraction.missing == 0) {
+                    return;
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static class Node {
+        private Map<String, Node> children;
+        private int index = -1;
+
+        private Node child(String name) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(name, k -> new Node());
+        }
+    }
+
+    private static class Extraction {
+        private final String[] values;
+        private int missing;
+
+        private Extraction(int size) {
+            this.values = new String[size];
+            this.missing = size;
+        }
+    }
+}
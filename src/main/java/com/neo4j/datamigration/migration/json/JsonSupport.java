@@ -0,0 +1,51 @@
+package com.neo4j.datamigration.migration.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Shared Jackson instances. Mappers and readers are thread-safe once
+ * configured and expensive to create, so the hot paths use these instead of
+ * creating their own per batch.
+ */
+public final class JsonSupport {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final JsonFactory FACTORY = MAPPER.getFactory();
+    public static final ObjectReader MAP_READER = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {});
+
+    private JsonSupport() {
+    }
+
+    /**
+     * Checks that the text is a JSON array of objects, or JSON null, by
+     * streaming over its tokens without building the values.
+     */
+    public static boolean isArrayOfObjects(String json) {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return true;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                return false;
+            }
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    return false;
+                }
+                parser.skipChildren();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.neo4j.datamigration.migration.metrics;
+
+import com.neo4j.datamigration.migration.pipeline.MigrationPipeline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Hot-path meters of the migration stages, exported through the actuator
+ * prometheus endpoint. Meters are created on first use and cached, so recording
+ * on the hot path is a map lookup and an atomic update.
+ */
+@Component
+public class MigrationMetrics {
+
+    public static final String SKIP_NOT_FOUND = "not_found";
+    public static final String SKIP_MISSING_ID_OR_ORG = "missing_id_or_org";
+    public static final String SKIP_MISSING_ROLES = "missing_roles";
+    public static final String SKIP_INVALID_ROW = "invalid_row";
+    public static final String SKIP_UNCHANGED = "unchanged";
+    public static final String SKIP_DUPLICATE = "duplicate";
+    public static final String SKIP_MISSING_ENDPOINT = "missing_endpoint";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<MigrationPipeline> pipelines = ConcurrentHashMap.newKeySet();
+    private final Set<String> pipelineGauges = ConcurrentHashMap.newKeySet();
+
+    public MigrationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordCassandraFetch(String table, long durationNanos, int rows) {
+        timer("migration.cassandra.fetch", "table", table).record(durationNanos, TimeUnit.NANOSECONDS);
+        summary("migration.cassandra.fetch.rows", "table", table).record(rows);
+    }
+
+    public void recordDesignationParse(long durationNanos) {
+        timer("migration.transform.designation.parse", "field", "designation")
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param query Which write, e.g. users or relations
+     */
+    public void recordNeo4jWrite(String query, long durationNanos, int rows, boolean success) {
+        timer("migration.neo4j.write", "query", query).record(durationNanos, TimeUnit.NANOSECONDS);
+        counter(success ? "migration.neo4j.rows.written" : "migration.neo4j.rows.failed", "query", query)
+                .increment(rows);
+    }
+
+    /**
+     * @param query Which write, e.g. users
+     */
+    public void recordDeadLettered(String query, long rows) {
+        counter("migration.neo4j.rows.deadlettered", "query", query).increment(rows);
+    }
+
+    public void recordSkipped(String reason, long count) {
+        if (count > 0) {
+            counter("migration.users.skipped", "reason", reason).increment(count);
+        }
+    }
+
+    /**
+     * Exposes queue depth and busy workers of the pipeline until it is
+     * unregistered. Values of pipelines running at the same time are summed per
+     * queue and stage name.
+     */
+    public void registerPipeline(MigrationPipeline pipeline) {
+        pipelines.add(pipeline);
+        pipeline.getQueueDepths().keySet().forEach(queue -> registerPipelineGauge(
+                "migration.pipeline.queue.depth", "queue", queue, MigrationPipeline::getQueueDepths));
+        pipeline.getBusyWorkers().keySet().forEach(stage -> registerPipelineGauge(
+                "migration.pipeline.workers.busy", "stage", stage, MigrationPipeline::getBusyWorkers));
+    }
+
+    public void unregisterPipeline(MigrationPipeline pipeline) {
+        pipelines.remove(pipeline);
+    }
+
+    private void registerPipelineGauge(String name, String tagKey, String tagValue,
+                                       Function<MigrationPipeline, Map<String, Integer>> values) {
+        if (pipelineGauges.add(name + ":" + tagValue)) {
+            Gauge.builder(name, pipelines, active -> active.stream()
+                    .mapToInt(pipeline -> values.apply(pipeline).getOrDefault(tagValue, 0))
+                    .sum())
+                    .tag(tagKey, tagValue)
+                    .register(registry);
+        }
+    }
+
+    private Timer timer(String name, String tagKey, String tagValue) {
+        return timers.computeIfAbsent(name + ":" + tagValue, key -> Timer.builder(name)
+                .tag(tagKey, tagValue)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private DistributionSummary summary(String name, String tagKey, String tagValue) {
+        return summaries.computeIfAbsent(name + ":" + tagValue, key -> DistributionSummary.builder(name)
+                .tag(tagKey, tagValue)
+                .register(registry));
+    }
+
+    private Counter counter(String name, String tagKey, String tagValue) {
+        return counters.computeIfAbsent(name + ":" + tagValue, key -> Counter.builder(name)
+                .tag(tagKey, tagValue)
+                .register(registry));
+    }
+}
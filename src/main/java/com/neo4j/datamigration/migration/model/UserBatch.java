@@ -0,0 +1,69 @@
+package com.neo4j.datamigration.migration.model;
+
+import com.neo4j.datamigration.cassandra.RecordBatch;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One batch of users as it moves through the onboarding pipeline. The reader
+ * creates it with the user IDs, the fetch stage adds the Cassandra records and
+ * the transform stage the Neo4j updates.
+ * <p>
+ * Batches read from a file carry the byte range of their rows so the write
+ * stage can checkpoint them; other batches have a range of -1.
+ */
+public class UserBatch {
+
+    private final List<String> userIds;
+    private final long startOffset;
+    private final long endOffset;
+    private RecordBatch userRecords;
+    private Map<String, List<String>> userIdToRoles;
+    private List<Map<String, Object>> neo4jUpdates;
+
+    public UserBatch(List<String> userIds, long startOffset, long endOffset) {
+        this.userIds = userIds;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    public UserBatch(List<String> userIds, RecordBatch userRecords, Map<String, List<String>> userIdToRoles) {
+        this(userIds, -1, -1);
+        this.userRecords = userRecords;
+        this.userIdToRoles = userIdToRoles;
+    }
+
+    public List<String> getUserIds() {
+        return userIds;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public RecordBatch getUserRecords() {
+        return userRecords;
+    }
+
+    public Map<String, List<String>> getUserIdToRoles() {
+        return userIdToRoles;
+    }
+
+    public void setUserRecords(RecordBatch userRecords, Map<String, List<String>> userIdToRoles) {
+        this.userRecords = userRecords;
+        this.userIdToRoles = userIdToRoles;
+    }
+
+    public List<Map<String, Object>> getNeo4jUpdates() {
+        return neo4jUpdates;
+    }
+
+    public void setNeo4jUpdates(List<Map<String, Object>> neo4jUpdates) {
+        this.neo4jUpdates = neo4jUpdates;
+    }
+}
@@ -0,0 +1,17 @@
+package com.neo4j.datamigration.migration.pipeline;
+
+/**
+ * Decides what happens to an item a pipeline stage failed to process, e.g.
+ * counting its rows as failed so the rest of the job can go on.
+ */
+@FunctionalInterface
+public interface ItemFailureHandler {
+
+    /**
+     * Called on the worker thread that failed.
+     *
+     * @param item The item taken from the stage's input queue
+     * @throws RuntimeException to fail the pipeline instead
+     */
+    void onItemFailed(String stageName, Object item, Exception error);
+}
@@ -0,0 +1,215 @@
+package com.neo4j.datamigration.migration.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Chain of stages connected by bounded {@link StageQueue}s. The caller feeds
+ * the source queue (typically while reading the input file) and closes it when
+ * done; every stage then drains and closes its own output in turn, so memory
+ * held by the pipeline is bounded by the queue capacities regardless of the
+ * input size.
+ * <p>
+ * An item a stage fails on fails the pipeline, unless a failure handler
+ * accounts for it. A failed pipeline aborts its queues, so the caller's next
+ * put and {@link #await()} report the failure.
+ */
+public class MigrationPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationPipeline.class);
+
+    private final String name;
+    private final StageListener listener;
+    private final List<StageQueue<?>> queues = new ArrayList<>();
+    private final List<PipelineStage<?, ?>> stages = new ArrayList<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private ItemFailureHandler failureHandler = (stageName, item, error) -> {
+        throw error instanceof RuntimeException ? (RuntimeException) error
+                : new IllegalStateException("Stage " + stageName + " failed: " + error.getMessage(), error);
+    };
+    private int totalWorkers;
+    private ExecutorService executor;
+
+    public MigrationPipeline(String name) {
+        this(name, (stageName, durationNanos) -> {
+        });
+    }
+
+    public MigrationPipeline(String name, StageListener listener) {
+        this.name = name;
+        this.listener = listener;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Items waiting in each queue, by queue name
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (StageQueue<?> queue : queues) {
+            depths.merge(queue.getName(), queue.size(), Integer::sum);
+        }
+        return depths;
+    }
+
+    /**
+     * @return Workers currently processing an item, by stage name
+     */
+    public Map<String, Integer> getBusyWorkers() {
+        Map<String, Integer> busy = new LinkedHashMap<>();
+        for (PipelineStage<?, ?> stage : stages) {
+            busy.merge(stage.getName(), stage.getBusyWorkers(), Integer::sum);
+        }
+        return busy;
+    }
+
+    /**
+     * Sets the handler of items a stage failed to process, before the pipeline
+     * is started.
+     */
+    public void onItemFailed(ItemFailureHandler handler) {
+        this.failureHandler = handler;
+    }
+
+    public <T> StageQueue<T> source(String queueName, int capacity) {
+        StageQueue<T> queue = new StageQueue<>(queueName, capacity, 1);
+        queues.add(queue);
+        return queue;
+    }
+
+    public <I, O> StageQueue<O> stage(String stageName, int workers, StageQueue<I> input, int outputCapacity,
+                                      Function<I, O> processor) {
+        return flatStage(stageName, workers, input, outputCapacity,
+                (item, emitter) -> emitter.accept(processor.apply(item)));
+    }
+
+    /**
+     * Adds a stage whose processor may emit any number of results per input item,
+     * e.g. one item per page of a range scan.
+     */
+    public <I, O> StageQueue<O> flatStage(String stageName, int workers, StageQueue<I> input, int outputCapacity,
+                                          BiConsumer<I, Consumer<O>> processor) {
+        StageQueue<O> output = new StageQueue<>(stageName, outputCapacity, workers);
+        queues.add(output);
+        stages.add(new PipelineStage<>(stageName, workers, input, output, processor, listener,
+                this::handleItemFailure));
+        totalWorkers += workers;
+        return output;
+    }
+
+    public <I> void sink(String stageName, int workers, StageQueue<I> input, Consumer<I> consumer) {
+        stages.add(new PipelineStage<I, Void>(stageName, workers, input, null,
+                (item, emitter) -> consumer.accept(item), listener, this::handleItemFailure));
+        totalWorkers += workers;
+    }
+
+    public void start() {
+        executor = Executors.newFixedThreadPool(totalWorkers, new PipelineThreadFactory(name));
+        for (PipelineStage<?, ?> stage : stages) {
+            stage.start(executor, futures);
+        }
+        logger.info("Pipeline {} started with {} stages and {} workers", name, stages.size(), totalWorkers);
+    }
+
+    /**
+     * Waits for every stage to drain. The source queue must have been closed by
+     * the caller, otherwise this blocks forever.
+     */
+    public void await() {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new CancellationException("Interrupted while waiting for pipeline " + name);
+        } catch (ExecutionException e) {
+            abort();
+            checkFailed();
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IllegalStateException("Pipeline " + name + " failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        logger.info("Pipeline {} completed", name);
+    }
+
+    /**
+     * For callers whose put was cancelled, to tell a failed pipeline from a
+     * cancelled one.
+     *
+     * @throws IllegalStateException if a stage failed the pipeline
+     */
+    public void checkFailed() {
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("Pipeline " + name + " failed: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Stops all stages as soon as possible, discarding items still queued.
+     */
+    public void abort() {
+        logger.warn("Aborting pipeline {}", name);
+        for (StageQueue<?> queue : queues) {
+            queue.abort();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handleItemFailure(String stageName, Object item, Exception error) {
+        try {
+            failureHandler.onItemFailed(stageName, item, error);
+        } catch (RuntimeException e) {
+            if (failure.compareAndSet(null, e)) {
+                logger.error("Stage {} of pipeline {} failed, aborting", stageName, name);
+                for (StageQueue<?> queue : queues) {
+                    queue.abort();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static class PipelineThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        PipelineThreadFactory(String prefix) {
+            this.prefix = prefix + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.neo4j.datamigration.migration.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A pool of workers that take items from an input queue and hand every result
+ * the processor emits to the output queue. A sink stage has no output queue.
+ * An item the processor fails on is handed to the failure handler, which may
+ * account for it and let the worker go on with the next item.
+ */
+class PipelineStage<I, O> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final int workers;
+    private final StageQueue<I> input;
+    private final StageQueue<O> output;
+    private final BiConsumer<I, Consumer<O>> processor;
+    private final StageListener listener;
+    private final ItemFailureHandler failureHandler;
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+
+    PipelineStage(String name, int workers, StageQueue<I> input, StageQueue<O> output,
+                  BiConsumer<I, Consumer<O>> processor, StageListener listener,
+                  ItemFailureHandler failureHandler) {
+        this.name = name;
+        this.workers = workers;
+        this.input = input;
+        this.output = output;
+        this.processor = processor;
+        this.listener = listener;
+        this.failureHandler = failureHandler;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getBusyWorkers() {
+        return busyWorkers.get();
+    }
+
+    void start(ExecutorService executor, List<Future<?>> futures) {
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(this::runWorker));
+        }
+    }
+
+    private void runWorker() {
+        long[] blockedNanos = new long[1];
+        Consumer<O> emitter = result -> {
+            if (result != null && output != null) {
+                long start = System.nanoTime();
+                output.put(result);
+                blockedNanos[0] += System.nanoTime() - start;
+            }
+        };
+        try {
+            I item;
+            while ((item = input.take()) != null) {
+                busyWorkers.incrementAndGet();
+                try {
+                    blockedNanos[0] = 0;
+                    long start = System.nanoTime();
+                    processor.accept(item, emitter);
+                    listener.onItemProcessed(name, System.nanoTime() - start - blockedNanos[0]);
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.error("Stage {} failed to process item: {}", name, e.getMessage(), e);
+                    failureHandler.onItemFailed(name, item, e);
+                } finally {
+                    busyWorkers.decrementAndGet();
+                }
+            }
+        } finally {
+            if (output != null) {
+                output.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.neo4j.datamigration.migration.pipeline;
+
+/**
+ * Receives the processing time of every item handled by a pipeline stage,
+ * excluding time spent blocked on a full output queue.
+ */
+@FunctionalInterface
+public interface StageListener {
+
+    void onItemProcessed(String stageName, long durationNanos);
+}
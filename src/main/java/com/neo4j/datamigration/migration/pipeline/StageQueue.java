@@ -0,0 +1,97 @@
+package com.neo4j.datamigration.migration.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded hand-off queue between two pipeline stages. Producers block on
+ * {@link #put(Object)} once the queue is full, which is what propagates
+ * backpressure upstream. The queue is closed once every registered producer has
+ * called {@link #close()}; consumers then drain the remaining items and receive
+ * {@code null}.
+ */
+public class StageQueue<T> {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final AtomicInteger openProducers;
+    private volatile boolean aborted;
+
+    public StageQueue(String name, int capacity, int producers) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.openProducers = new AtomicInteger(producers);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Blocks until there is room for the item.
+     *
+     * @throws CancellationException if the pipeline was aborted or the calling
+     *                               thread was interrupted while waiting
+     */
+    public void put(T item) {
+        try {
+            while (!queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkAborted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while writing to queue " + name);
+        }
+    }
+
+    /**
+     * Blocks until an item is available.
+     *
+     * @return the next item, or null once all producers are closed and the queue
+     *         is drained
+     */
+    public T take() {
+        try {
+            while (true) {
+                T item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                checkAborted();
+                if (openProducers.get() <= 0 && queue.isEmpty()) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while reading from queue " + name);
+        }
+    }
+
+    /**
+     * Called once by each producer when it has no more items to hand over.
+     */
+    public void close() {
+        openProducers.decrementAndGet();
+    }
+
+    public void abort() {
+        aborted = true;
+        queue.clear();
+    }
+
+    private void checkAborted() {
+        if (aborted) {
+            throw new CancellationException("Queue " + name + " was aborted");
+        }
+    }
+}
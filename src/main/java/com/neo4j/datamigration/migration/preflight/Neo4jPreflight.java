@@ -0,0 +1,197 @@
+package com.neo4j.datamigration.migration.preflight;
+
+import com.neo4j.datamigration.exception.GraphException;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.driver.v1.summary.Plan;
+import org.neo4j.driver.v1.summary.ResultSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Checks before a job writes to Neo4j that its queries will use an index, so
+ * a job without one fails in seconds instead of running for days on label
+ * scans. The query templates are planned with EXPLAIN; if a plan scans a label
+ * or all nodes, the preflight fails. Only if schema creation is enabled, the
+ * unique constraint on the key property is created instead, or an index where
+ * existing duplicates prevent the constraint, and the plans are checked again
+ * once the index is online.
+ * <p>
+ * The connection pool is warmed with one connection per writer, and a probe
+ * query is run in a transaction that is rolled back to estimate throughput.
+ */
+public class Neo4jPreflight {
+
+    private static final Logger logger = LoggerFactory.getLogger(Neo4jPreflight.class);
+
+    private static final String[] SCAN_OPERATORS = {"NodeByLabelScan", "AllNodesScan"};
+
+    private final Driver driver;
+    private final boolean createSchema;
+    private final long indexTimeoutSeconds;
+
+    /**
+     * @param createSchema Whether to create the constraint or index if a plan
+     *                     needs it, otherwise the preflight fails
+     */
+    public Neo4jPreflight(Driver driver, boolean createSchema, long indexTimeoutSeconds) {
+        this.driver = driver;
+        this.createSchema = createSchema;
+        this.indexTimeoutSeconds = indexTimeoutSeconds;
+    }
+
+    /**
+     * @param label       Label the templates look nodes up by
+     * @param key         Property the templates look nodes up by
+     * @param templates   Queries of the job by name, with parameters of the
+     *                    right types
+     * @param probe       Query representative of the job's writes, rolled back
+     * @param probeRows   Number of rows the probe processes
+     * @param connections Connections the job uses at once
+     * @return Plans, schema changes and the throughput estimate, for the job
+     *         status
+     * @throws GraphException if a template scans nodes after the schema check
+     */
+    public Map<String, Object> run(String label, String key, Map<String, Statement> templates, Statement probe,
+                                   int probeRows, int connections) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("connectMillis", warmUp(connections));
+        Map<String, Set<String>> operators = explain(templates);
+        List<String> scanning = scanningTemplates(operators);
+        if (!scanning.isEmpty()) {
+            if (!createSchema) {
+                throw new GraphException("PREFLIGHT_FAILED", "Queries " + scanning + " scan all :" + label
+                        + " nodes, create an index on :" + label + "(" + key + ") first");
+            }
+            report.put("created", createSchema(label, key));
+            operators = explain(templates);
+            scanning = scanningTemplates(operators);
+            if (!scanning.isEmpty()) {
+                throw new GraphException("PREFLIGHT_FAILED", "Queries " + scanning + " still scan all :" + label
+                        + " nodes: " + operators);
+            }
+        }
+        report.put("plans", operators);
+        report.put("probe", probe(probe, probeRows, connections));
+        logger.info("Preflight passed: {}", report);
+        return report;
+    }
+
+    /**
+     * Opens the connections concurrently, each with a trivial query.
+     *
+     * @return Milliseconds until all connections answered
+     */
+    private long warmUp(int connections) {
+        long start = System.nanoTime();
+        List<Session> sessions = new ArrayList<>(connections);
+        try {
+            List<CompletableFuture<?>> queries = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                Session session = driver.session();
+                sessions.add(session);
+                queries.add(session.runAsync("RETURN 1").thenCompose(cursor -> cursor.consumeAsync())
+                        .toCompletableFuture());
+            }
+            CompletableFuture.allOf(queries.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            sessions.forEach(Session::close);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private Map<String, Set<String>> explain(Map<String, Statement> templates) {
+        Map<String, Set<String>> operators = new LinkedHashMap<>();
+        try (Session session = driver.session()) {
+            templates.forEach((name, template) -> {
+                ResultSummary summary = session.run(template.withText("EXPLAIN " + template.text())).consume();
+                Set<String> planOperators = new LinkedHashSet<>();
+                if (summary.hasPlan()) {
+                    collectOperators(summary.plan(), planOperators);
+                }
+                operators.put(name, planOperators);
+            });
+        }
+        return operators;
+    }
+
+    private static void collectOperators(Plan plan, Set<String> operators) {
+        // Operator names carry a runtime suffix in later versions, e.g. NodeIndexSeek@neo4j.
+        String operator = plan.operatorType();
+        int suffix = operator.indexOf('@');
+        operators.add(suffix < 0 ? operator : operator.substring(0, suffix));
+        for (Plan child : plan.children()) {
+            collectOperators(child, operators);
+        }
+    }
+
+    private static List<String> scanningTemplates(Map<String, Set<String>> operators) {
+        List<String> scanning = new ArrayList<>();
+        operators.forEach((name, planOperators) -> {
+            for (String scan : SCAN_OPERATORS) {
+                if (planOperators.contains(scan)) {
+                    scanning.add(name);
+                    return;
+                }
+            }
+        });
+        return scanning;
+    }
+
+    /**
+     * @return The schema created
+     */
+    private String createSchema(String label, String key) {
+        String created;
+        try (Session session = driver.session()) {
+            try {
+                session.run("CREATE CONSTRAINT ON (n:" + label + ") ASSERT n." + key + " IS UNIQUE").consume();
+                created = "unique constraint on :" + label + "(" + key + ")";
+            } catch (ClientException e) {
+                // Usually existing duplicates, which the writes will not fix; reported with the schema created.
+                logger.error("Could not create unique constraint on :{}({}), creating an index instead: {}",
+                        label, key, e.getMessage());
+                session.run("CREATE INDEX ON :" + label + "(" + key + ")").consume();
+                created = "index on :" + label + "(" + key + "), the unique constraint failed: " + e.getMessage();
+            }
+            logger.info("Created {}, waiting up to {} s for it to come online", created, indexTimeoutSeconds);
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("timeout", indexTimeoutSeconds);
+            session.run("CALL db.awaitIndexes($timeout)", params).consume();
+        }
+        return created;
+    }
+
+    /**
+     * Runs the probe in a transaction that is rolled back.
+     */
+    private Map<String, Object> probe(Statement probe, int probeRows, int connections) {
+        long start = System.nanoTime();
+        try (Session session = driver.session(); Transaction tx = session.beginTransaction()) {
+            tx.run(probe).consume();
+            tx.failure();
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rows", probeRows);
+        result.put("millis", nanos / 1_000_000);
+        long rowsPerSecond = (long) (probeRows * 1e9 / nanos);
+        result.put("rowsPerSecond", rowsPerSecond);
+        result.put("expectedRowsPerSecond", rowsPerSecond * connections);
+        return result;
+    }
+}
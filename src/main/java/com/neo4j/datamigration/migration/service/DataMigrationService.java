@@ -1,11 +1,35 @@
 package com.neo4j.datamigration.migration.service;
 
 import com.neo4j.datamigration.migration.model.Response;
+import com.neo4j.datamigration.migration.writer.SinkType;
 import org.springframework.web.multipart.MultipartFile;
 
 
 public interface DataMigrationService {
-    Response onBoardNewUsers(MultipartFile file);
+    /**
+     * @param incremental Only write users whose organisation, designation or
+     *                    roles changed since they were last written
+     * @param sink        Write to Neo4j, or to neo4j-admin import files for an
+     *                    initial load
+     */
+    Response onBoardNewUsers(MultipartFile file, boolean incremental, SinkType sink);
 
-    Response updateRelaionsUsers(MultipartFile file);
+    /**
+     * Onboards users from a CSV file, or every CSV file of a directory, on the
+     * server. The path is relative to ingest.base.dir and read in place.
+     */
+    Response onBoardNewUsersFromPath(String path, boolean incremental, SinkType sink);
+
+    /**
+     * Imports the relations file. In parallel mode rows are partitioned by node
+     * so concurrent transactions never lock the same node.
+     */
+    Response updateRelaionsUsers(MultipartFile file, boolean parallel, SinkType sink);
+
+    /**
+     * Re-syncs every user by scanning the user and user_roles tables in parallel
+     * over the given number of token sub-ranges, without an input file. An
+     * incremental re-sync only writes the users that changed.
+     */
+    Response syncAllUsers(int splits, boolean incremental, SinkType sink);
 }
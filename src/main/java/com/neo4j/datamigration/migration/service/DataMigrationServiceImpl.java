@@ -1,28 +1,96 @@
 package com.neo4j.datamigration.migration.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.exceptions.BusyPoolException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.QueryExecutionException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.CountingInputStream;
 import com.neo4j.datamigration.cassandra.CassandraOperation;
+import com.neo4j.datamigration.cassandra.RecordBatch;
+import com.neo4j.datamigration.migration.control.AdaptiveController;
+import com.neo4j.datamigration.migration.control.AimdLimit;
+import com.neo4j.datamigration.migration.dedup.UserIdSet;
+import com.neo4j.datamigration.migration.delta.FingerprintStore;
+import com.neo4j.datamigration.migration.delta.Fingerprints;
+import com.neo4j.datamigration.migration.io.ByteBufferInputStream;
+import com.neo4j.datamigration.migration.io.ChunkedCsvReader;
+import com.neo4j.datamigration.migration.io.Compression;
+import com.neo4j.datamigration.migration.io.CsvColumnScanner;
+import com.neo4j.datamigration.migration.io.MappedCsvScanner;
+import com.neo4j.datamigration.migration.io.ReadAheadInputStream;
+import com.neo4j.datamigration.migration.io.StreamingCsvScanner;
+import com.neo4j.datamigration.migration.job.CheckpointJournal;
+import com.neo4j.datamigration.migration.job.JobManager;
+import com.neo4j.datamigration.migration.job.MigrationJob;
+import com.neo4j.datamigration.migration.json.JsonFieldExtractor;
+import com.neo4j.datamigration.migration.json.JsonSupport;
+import com.neo4j.datamigration.migration.metrics.MigrationMetrics;
 import com.neo4j.datamigration.migration.model.Response;
+import com.neo4j.datamigration.migration.model.UserBatch;
+import com.neo4j.datamigration.migration.pipeline.MigrationPipeline;
+import com.neo4j.datamigration.migration.pipeline.StageQueue;
+import com.neo4j.datamigration.migration.preflight.Neo4jPreflight;
+import com.neo4j.datamigration.migration.throttle.Throttles;
+import com.neo4j.datamigration.migration.writer.AdminImportWriter;
+import com.neo4j.datamigration.migration.writer.AsyncWriteEngine;
+import com.neo4j.datamigration.migration.writer.BatchSink;
+import com.neo4j.datamigration.migration.writer.DeadLetterFile;
+import com.neo4j.datamigration.migration.writer.PartitionedRelationWriter;
+import com.neo4j.datamigration.migration.writer.RetryingBatchWriter;
+import com.neo4j.datamigration.migration.writer.SinkType;
+import com.neo4j.datamigration.migration.writer.UserNodeResolver;
 import com.neo4j.datamigration.utils.Constants;
+import com.neo4j.datamigration.utils.PropertiesCache;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.StatementResultCursor;
 import org.neo4j.driver.v1.Session;
-import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.v1.exceptions.SessionExpiredException;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.neo4j.driver.v1.summary.ResultSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class DataMigrationServiceImpl implements DataMigrationService {
@@ -35,65 +103,757 @@ public class DataMigrationServiceImpl implements DataMigrationService {
     @Autowired
     private CassandraOperation cassandraOperation;
 
-    private static final int BATCH_SIZE = 4000;
-    private static final int THREAD_POOL_SIZE = 10; 
+    @Autowired
+    private JobManager jobManager;
+
+    @Autowired
+    private MigrationMetrics migrationMetrics;
+
+    @Autowired
+    private FingerprintStore fingerprintStore;
+
+    @Autowired
+    private Throttles throttles;
+
+    private static final int TRANSFORM_POOL_SIZE = 2;
+    private static final int WRITE_POOL_SIZE = 2;
+    private static final int STAGE_QUEUE_CAPACITY = 20;
+
+    private static final String USER_MERGE_QUERY = "UNWIND $users AS user " +
+            "MERGE (u:userV3 {userId: user.userId}) " +
+            "SET u.organisationId = user.organisationId, " +
+            "u.designation = user.designation, " +
+            "u.role = user.role";
+    private static final String NODE_ID_LOOKUP_QUERY = "UNWIND $userIds AS userId " +
+            "MATCH (u:userV3 {userId: userId}) " +
+            "RETURN userId, id(u) AS nodeId";
+    private static final String RELATION_MERGE_QUERY = "UNWIND $rows AS row " +
+            "MATCH (u) WHERE id(u) = row.startNodeId " +
+            "MATCH (r) WHERE id(r) = row.endNodeId " +
+            "MERGE (u)-[rel:connect]->(r) " +
+            "SET rel += row.relProps";
+
+    private final Path checkpointDir = Paths.get(
+            PropertiesCache.getInstance().getProperty(Constants.CHECKPOINT_DIR));
+    private final int checkpointSyncEvery = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.CHECKPOINT_SYNC_EVERY));
+    private final long checkpointSyncIntervalMillis = Long.parseLong(
+            PropertiesCache.getInstance().getProperty(Constants.CHECKPOINT_SYNC_INTERVAL_MS));
+    private final Path ingestBaseDir = Paths.get(
+            PropertiesCache.getInstance().getProperty(Constants.INGEST_BASE_DIR)).toAbsolutePath().normalize();
+    private final long csvParseChunkSize = Long.parseLong(
+            PropertiesCache.getInstance().getProperty(Constants.CSV_PARSE_CHUNK_SIZE_MB)) * 1024 * 1024;
+    private final ForkJoinPool parsePool = new ForkJoinPool(parseParallelism(
+            Integer.parseInt(PropertiesCache.getInstance().getProperty(Constants.CSV_PARSE_THREADS))));
+    private final int relationsBatchSize = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_BATCH_SIZE));
+    private final int relationsParallelBatchSize = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_PARALLEL_BATCH_SIZE));
+    private final int relationsPartitions = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_PARALLEL_PARTITIONS));
+    private final int maxFetchConcurrency = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.ADAPTIVE_CONCURRENCY_MAX));
+    private final int neo4jWriteAttempts = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.NEO4J_WRITE_RETRY_ATTEMPTS));
+    private final long neo4jWriteBackoffMillis = Long.parseLong(
+            PropertiesCache.getInstance().getProperty(Constants.NEO4J_WRITE_RETRY_BACKOFF_MS));
+    private final long neo4jWriteMaxBackoffMillis = Long.parseLong(
+            PropertiesCache.getInstance().getProperty(Constants.NEO4J_WRITE_RETRY_MAX_BACKOFF_MS));
+    private final int neo4jWriteMaxInFlight = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.NEO4J_WRITE_MAX_IN_FLIGHT));
+    private final Path deadLetterDir = Paths.get(
+            PropertiesCache.getInstance().getProperty(Constants.DEAD_LETTER_DIR));
+    private final Path importDir = Paths.get(
+            PropertiesCache.getInstance().getProperty(Constants.IMPORT_DIR));
+    private final int importShards = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.IMPORT_SHARDS));
+    private final boolean importGzip = Boolean.parseBoolean(
+            PropertiesCache.getInstance().getProperty(Constants.IMPORT_GZIP));
+    private final List<String> importRelationshipProperties = Arrays.asList(
+            PropertiesCache.getInstance().getProperty(Constants.IMPORT_RELATIONSHIP_PROPERTIES).split(","));
+    private final int relationsNodeCacheSize = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_NODE_CACHE_SIZE));
+    private final boolean relationsBloomEnabled = Boolean.parseBoolean(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_BLOOM_ENABLED));
+    private final double relationsBloomFpp = Double.parseDouble(
+            PropertiesCache.getInstance().getProperty(Constants.RELATIONS_BLOOM_FPP));
+    private final boolean preflightEnabled = Boolean.parseBoolean(
+            PropertiesCache.getInstance().getProperty(Constants.PREFLIGHT_ENABLED));
+    private final boolean preflightCreateSchema = Boolean.parseBoolean(
+            PropertiesCache.getInstance().getProperty(Constants.PREFLIGHT_CREATE_SCHEMA));
+    private final long preflightIndexTimeoutSeconds = Long.parseLong(
+            PropertiesCache.getInstance().getProperty(Constants.PREFLIGHT_INDEX_TIMEOUT_SECONDS));
+    private final int preflightProbeRows = Integer.parseInt(
+            PropertiesCache.getInstance().getProperty(Constants.PREFLIGHT_PROBE_ROWS));
+
+    private static final List<String> CSV_FILE_SUFFIXES = Arrays.asList(".csv", ".csv.gz", ".csv.bz2",
+            ".csv.lz4");
+    // Decompressed chunks are on the heap, up to a few per parse thread.
+    private static final int STREAM_PARSE_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final String ROLES_SOURCE_TABLE = "table";
+    private static final String ROLES_SOURCE_COLUMN = "column";
+    private static final List<String> USER_ROLE_FIELDS = Arrays.asList("userid", "role", "scope");
+
+    private final boolean rolesFromColumn = isRolesSourceColumn(
+            PropertiesCache.getInstance().getProperty(Constants.USER_ROLES_SOURCE));
+    private final List<String> userFields = rolesFromColumn
+            ? Arrays.asList("id", "rootorgid", "profiledetails", "roles")
+            : Arrays.asList("id", "rootorgid", "profiledetails");
+
+    private final JsonFieldExtractor designationExtractor = new JsonFieldExtractor(JsonSupport.FACTORY,
+            Arrays.asList(PropertiesCache.getInstance().getProperty(Constants.PROFILE_DESIGNATION_PATHS).split(",")));
+
+    @Override
+    public Response onBoardNewUsers(MultipartFile file, boolean incremental, SinkType sink) {
+        Path input = stageUpload(file);
+        MigrationJob job = jobManager.submit("onBoardNewUsers", j -> {
+            try {
+                runOnBoardNewUsers(Collections.singletonList(input), incremental, sink, j);
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        });
+        return jobResponse(job);
+    }
+
+    @Override
+    public Response onBoardNewUsersFromPath(String path, boolean incremental, SinkType sink) {
+        List<Path> inputs = resolveIngestPath(path);
+        MigrationJob job = jobManager.submit("onBoardNewUsersFromPath",
+                j -> runOnBoardNewUsers(inputs, incremental, sink, j));
+        return jobResponse(job);
+    }
 
     @Override
-    public Response onBoardNewUsers(MultipartFile file) {
-        List<List<String>> userIdBatches = null;
+    public Response syncAllUsers(int splits, boolean incremental, SinkType sink) {
+        MigrationJob job = jobManager.submit("syncAllUsers", j -> runSyncAllUsers(splits, incremental, sink, j));
+        return jobResponse(job);
+    }
+
+    /**
+     * Completed batches are recorded in a checkpoint journal keyed by a hash of
+     * the input and the destination it is written to, so re-submitting the
+     * same file to the same sink after a crash resumes at the first unfinished
+     * batch. The journal of an input is removed once every batch of it has been
+     * committed and none of its rows failed. Users that could not be written are
+     * in the dead letter file of the job, which can be re-submitted as an input.
+     * <p>
+     * Compressed inputs are decompressed as they are read. Progress counts bytes
+     * of the inputs as stored, i.e. compressed bytes of compressed inputs.
+     *
+     * @param incremental Skip users whose fields are unchanged since they were
+     *                    last written
+     */
+    private void runOnBoardNewUsers(List<Path> inputs, boolean incremental, SinkType sink, MigrationJob job)
+            throws Exception {
+        long total = 0;
+        for (Path input : inputs) {
+            total += Files.size(input);
+        }
+        job.setProgressTotal(total);
+        if (sink == SinkType.BOLT) {
+            preflightUserWrites(job);
+        }
+        AdaptiveController controller = newAdaptiveController();
+        job.addStatus("adaptive", controller::toMap);
+        try (DeadLetterFile deadLetters = newDeadLetterFile(job);
+             AsyncWriteEngine writes = newWriteEngine(job);
+             AdminImportWriter importWriter = sink == SinkType.IMPORT ? newImportWriter(job) : null) {
+            job.addStatus("deadLetters", deadLetters::toMap);
+            BatchSink<Map<String, Object>> userSink = importWriter != null ? importWriter
+                    : newUserWriter(controller, deadLetters, writes.getExecutor());
+            String destination = importWriter != null
+                    ? "import:" + importWriter.getDirectory().toAbsolutePath()
+                    : "bolt:" + PropertiesCache.getInstance().getProperty(Constants.NEO4J_HOST_URL);
+            UserIdSet seenUserIds = new UserIdSet();
+            long progressBase = 0;
+            for (Path input : inputs) {
+                job.checkCancelled();
+                logger.info("Onboarding users from {}", input);
+                runOnBoardNewUsers(input, destination, progressBase, incremental, job, controller, userSink,
+                        writes, seenUserIds);
+                progressBase += Files.size(input);
+            }
+            logger.info("Read {} distinct user IDs, {} of them not UUIDs, de-duplicated in {} MB of tables",
+                    seenUserIds.size(), seenUserIds.otherIdCount(), seenUserIds.tableBytes() >> 20);
+        }
+        logger.info("All batches processed.");
+    }
+
+    private void runOnBoardNewUsers(Path input, String destination, long progressBase, boolean incremental,
+                                    MigrationJob job, AdaptiveController controller,
+                                    BatchSink<Map<String, Object>> userSink, AsyncWriteEngine writes,
+                                    UserIdSet seenUserIds) throws Exception {
+        String inputHash = CheckpointJournal.inputHash(input);
+        // Counted for this input only, they decide whether its journal is kept.
+        AtomicLong uncommittedBatches = new AtomicLong();
+        AtomicLong failedRows = new AtomicLong();
+        try (CheckpointJournal journal = CheckpointJournal.open(checkpointDir, inputHash, destination,
+                checkpointSyncEvery, checkpointSyncIntervalMillis)) {
+            MigrationPipeline pipeline = new MigrationPipeline("onBoardNewUsers", job);
+            StageQueue<UserBatch> userIdBatches = pipeline.source("userIds", STAGE_QUEUE_CAPACITY);
+            StageQueue<UserBatch> fetchedBatches = pipeline.stage("fetch", maxFetchConcurrency, userIdBatches,
+                    STAGE_QUEUE_CAPACITY, batch -> {
+                        controller.acquire();
+                        try {
+                            fetchUserBatch(batch, controller);
+                        } finally {
+                            controller.release();
+                        }
+                        job.addFetched(batch.getUserRecords().size());
+                        return batch;
+                    });
+            addWriteStages(pipeline, fetchedBatches, incremental, job, userSink, writes, batch -> {
+                markCompleted(journal, batch);
+                uncommittedBatches.decrementAndGet();
+            }, failedRows::addAndGet);
+            // A failed batch is not checkpointed, so a re-run of the input writes it again.
+            pipeline.onItemFailed((stageName, item, error) -> {
+                int rows = ((UserBatch) item).getUserIds().size();
+                job.addFailed(rows);
+                failedRows.addAndGet(rows);
+            });
+            job.onCancel(pipeline::abort);
+            migrationMetrics.registerPipeline(pipeline);
+            pipeline.start();
+            try {
+                streamUserIdsInBatches(input, controller::getBatchSize, journal,
+                        position -> job.setProgress(progressBase + position), batch -> {
+                    job.addRead(batch.getUserIds().size());
+                    UserBatch unique = dropDuplicates(batch, seenUserIds, job);
+                    if (unique.getUserIds().isEmpty()) {
+                        markCompleted(journal, unique);
+                    } else {
+                        uncommittedBatches.incrementAndGet();
+                        userIdBatches.put(unique);
+                    }
+                });
+                userIdBatches.close();
+                pipeline.await();
+                writes.awaitIdle();
+            } catch (CancellationException e) {
+                pipeline.checkFailed();
+                throw e;
+            } catch (Exception e) {
+                logger.error("Onboarding pipeline failed: {}", e.getMessage(), e);
+                pipeline.abort();
+                throw e;
+            } finally {
+                migrationMetrics.unregisterPipeline(pipeline);
+            }
+            if (uncommittedBatches.get() == 0 && failedRows.get() == 0) {
+                journal.delete();
+            } else {
+                logger.warn("Keeping checkpoint journal of {}, {} batches not committed and {} rows failed", input,
+                        uncommittedBatches.get(), failedRows.get());
+            }
+        }
+    }
+
+    /**
+     * Removes the user IDs seen before, in this batch or an earlier one, so a
+     * user is fetched and merged once and never by two concurrent batches.
+     * IDs of batches skipped on resume are not seen; their duplicates are
+     * merged again, which is harmless.
+     */
+    private UserBatch dropDuplicates(UserBatch batch, UserIdSet seenUserIds, MigrationJob job) {
+        List<String> userIds = batch.getUserIds();
+        List<String> unique = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            if (seenUserIds.add(userId)) {
+                unique.add(userId);
+            }
+        }
+        int duplicates = userIds.size() - unique.size();
+        if (duplicates == 0) {
+            return batch;
+        }
+        job.addSkipped(duplicates);
+        migrationMetrics.recordSkipped(MigrationMetrics.SKIP_DUPLICATE, duplicates);
+        return new UserBatch(unique, batch.getStartOffset(), batch.getEndOffset());
+    }
+
+    private static void markCompleted(CheckpointJournal journal, UserBatch batch) {
+        try {
+            journal.markCompleted(batch.getStartOffset(), batch.getEndOffset());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void runSyncAllUsers(int splits, boolean incremental, SinkType sink, MigrationJob job)
+            throws IOException {
+        if (sink == SinkType.BOLT) {
+            preflightUserWrites(job);
+        }
+        AdaptiveController controller = newAdaptiveController();
+        job.addStatus("adaptive", controller::toMap);
+        try (DeadLetterFile deadLetters = newDeadLetterFile(job);
+             AsyncWriteEngine writes = newWriteEngine(job);
+             AdminImportWriter importWriter = sink == SinkType.IMPORT ? newImportWriter(job) : null) {
+            job.addStatus("deadLetters", deadLetters::toMap);
+            runSyncAllUsers(splits, incremental, job, controller,
+                    importWriter != null ? importWriter : newUserWriter(controller, deadLetters, writes.getExecutor()),
+                    writes);
+        }
+    }
+
+    private void runSyncAllUsers(int splits, boolean incremental, MigrationJob job, AdaptiveController controller,
+                                 BatchSink<Map<String, Object>> userSink, AsyncWriteEngine writes) {
+        MigrationPipeline pipeline = new MigrationPipeline("syncAllUsers", job);
+        StageQueue<TokenRange> tokenRanges = pipeline.source("tokenRanges", STAGE_QUEUE_CAPACITY);
+        StageQueue<UserBatch> fetchedBatches = pipeline.flatStage("scan", maxFetchConcurrency, tokenRanges,
+                STAGE_QUEUE_CAPACITY, (range, emitter) -> {
+                    controller.acquire();
+                    try {
+                        scanUserRange(range, controller, batch -> {
+                            job.addRead(batch.getUserIds().size());
+                            job.addFetched(batch.getUserRecords().size());
+                            emitter.accept(batch);
+                        });
+                    } finally {
+                        controller.release();
+                    }
+                    job.addProgress(1);
+                });
+        addWriteStages(pipeline, fetchedBatches, incremental, job, userSink, writes, batch -> {
+        }, failed -> {
+        });
+        // Users of a failed range are unknown, the range is only reported and fails the job at the end.
+        List<TokenRange> failedRanges = Collections.synchronizedList(new ArrayList<>());
+        pipeline.onItemFailed((stageName, item, error) -> {
+            if (item instanceof TokenRange) {
+                failedRanges.add((TokenRange) item);
+            } else {
+                job.addFailed(((UserBatch) item).getUserIds().size());
+            }
+        });
+        job.addStatus("failedTokenRanges", failedRanges::size);
+        job.onCancel(pipeline::abort);
+        migrationMetrics.registerPipeline(pipeline);
+        pipeline.start();
+        List<TokenRange> ranges;
         try {
-            userIdBatches = streamUserIdsInBatches(file, BATCH_SIZE);
+            ranges = cassandraOperation.getTokenRanges(Constants.KEYSPACE_SUNBIRD, splits);
+            job.setProgressTotal(ranges.size());
+            for (TokenRange range : ranges) {
+                tokenRanges.put(range);
+            }
+            tokenRanges.close();
+            pipeline.await();
+            writes.awaitIdle();
+        } catch (CancellationException e) {
+            pipeline.checkFailed();
+            throw e;
         } catch (Exception e) {
-            logger.error("Error reading user IDs from file: {}", e.getMessage(), e);
-            return null;
-        }
-        ExecutorService executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-        List<CompletableFuture<Void>> futures = userIdBatches.stream()
-                .map(userIds -> CompletableFuture.runAsync(() -> processUserBatchOptimized(userIds), executor))
-                .collect(Collectors.toList());
-        futures.forEach(CompletableFuture::join);
-        executor.shutdown();
-        logger.info("All batches processed.");
-        return null;
+            logger.error("Error scanning token ranges: {}", e.getMessage(), e);
+            pipeline.abort();
+            throw e;
+        } finally {
+            migrationMetrics.unregisterPipeline(pipeline);
+        }
+        if (!failedRanges.isEmpty()) {
+            logger.error("Failed to scan token ranges {}", failedRanges);
+            throw new IllegalStateException(failedRanges.size() + " of " + ranges.size()
+                    + " token ranges failed to scan");
+        }
+        logger.info("All token ranges processed.");
+    }
+
+    /**
+     * The fingerprints of all users committed to Neo4j are recorded, in
+     * incremental mode users whose fingerprint is unchanged are not written.
+     *
+     * @param onWritten Called with every batch once its updates were written or
+     *                  rejected
+     * @param onFailed  Called with the number of rejected updates of every batch
+     */
+    private void addWriteStages(MigrationPipeline pipeline, StageQueue<UserBatch> fetchedBatches,
+                                boolean incremental, MigrationJob job, BatchSink<Map<String, Object>> userSink,
+                                AsyncWriteEngine writes, Consumer<UserBatch> onWritten, LongConsumer onFailed) {
+        StageQueue<UserBatch> transformedBatches = pipeline.stage("transform", TRANSFORM_POOL_SIZE,
+                fetchedBatches, STAGE_QUEUE_CAPACITY, batch -> {
+                    List<Map<String, Object>> updates = buildNeo4jUpdates(batch.getUserRecords(),
+                            batch.getUserIdToRoles());
+                    job.addSkipped(batch.getUserIds().size() - updates.size());
+                    migrationMetrics.recordSkipped(MigrationMetrics.SKIP_NOT_FOUND,
+                            batch.getUserIds().size() - batch.getUserRecords().size());
+                    if (incremental) {
+                        updates = dropUnchanged(updates, job);
+                    }
+                    batch.setNeo4jUpdates(updates);
+                    return batch;
+                });
+        // The write workers only start the writes, the engine bounds how many are in flight.
+        pipeline.sink("write", WRITE_POOL_SIZE, transformedBatches, batch -> {
+            List<Map<String, Object>> updates = batch.getNeo4jUpdates();
+            writes.submit(() -> userSink.writeAsync(updates, this::recordFingerprints), written -> {
+                job.addWritten(written);
+                job.addFailed(updates.size() - written);
+                onFailed.accept(updates.size() - written);
+                onWritten.accept(batch);
+            });
+        });
+    }
+
+    private static int parseParallelism(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static boolean isRolesSourceColumn(String source) {
+        if (ROLES_SOURCE_COLUMN.equalsIgnoreCase(source)) {
+            return true;
+        }
+        if (ROLES_SOURCE_TABLE.equalsIgnoreCase(source)) {
+            return false;
+        }
+        throw new IllegalArgumentException(Constants.USER_ROLES_SOURCE + " must be " + ROLES_SOURCE_TABLE + " or "
+                + ROLES_SOURCE_COLUMN + ", not " + source);
+    }
+
+    /**
+     * A controller for one job, starting from the configured initial limits.
+     */
+    private AdaptiveController newAdaptiveController() {
+        PropertiesCache properties = PropertiesCache.getInstance();
+        double backoffRatio = Double.parseDouble(properties.getProperty(Constants.ADAPTIVE_BACKOFF_RATIO));
+        long cooldownMillis = Long.parseLong(properties.getProperty(Constants.ADAPTIVE_COOLDOWN_MS));
+        AimdLimit batchSize = new AimdLimit("batch size",
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_BATCH_SIZE_MIN)),
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_BATCH_SIZE_MAX)),
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_BATCH_SIZE_INITIAL)),
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_BATCH_SIZE_STEP)),
+                backoffRatio, cooldownMillis);
+        AimdLimit concurrency = new AimdLimit("fetch concurrency",
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_CONCURRENCY_MIN)),
+                maxFetchConcurrency,
+                Integer.parseInt(properties.getProperty(Constants.ADAPTIVE_CONCURRENCY_INITIAL)),
+                1, backoffRatio, cooldownMillis);
+        return new AdaptiveController(batchSize, concurrency,
+                Double.parseDouble(properties.getProperty(Constants.ADAPTIVE_LATENCY_TOLERANCE)));
+    }
+
+    /**
+     * Writes user batches with retries on transient errors and records the users
+     * of rows that still fail in the dead letter file.
+     */
+    private RetryingBatchWriter<Map<String, Object>> newUserWriter(AdaptiveController controller,
+                                                                   DeadLetterFile deadLetters, Executor executor) {
+        return new RetryingBatchWriter<>(users -> writeUsersAsync(users, controller), executor,
+                DataMigrationServiceImpl::isNeo4jOverload, neo4jWriteAttempts, neo4jWriteBackoffMillis,
+                neo4jWriteMaxBackoffMillis, (user, error) -> {
+                    deadLetters.write((String) user.get("userId"),
+                            error.getClass().getSimpleName() + ": " + error.getMessage());
+                    migrationMetrics.recordDeadLettered("users", 1);
+                });
+    }
+
+    private List<Map<String, Object>> dropUnchanged(List<Map<String, Object>> updates, MigrationJob job) {
+        List<Map<String, Object>> changed = new ArrayList<>(updates.size());
+        for (Map<String, Object> update : updates) {
+            if (!fingerprintStore.matches((String) update.get("userId"), userFingerprint(update))) {
+                changed.add(update);
+            }
+        }
+        job.addSkipped(updates.size() - changed.size());
+        migrationMetrics.recordSkipped(MigrationMetrics.SKIP_UNCHANGED, updates.size() - changed.size());
+        return changed;
+    }
+
+    private void recordFingerprints(List<Map<String, Object>> writtenUpdates) {
+        fingerprintStore.putAll(writtenUpdates, update -> (String) update.get("userId"),
+                DataMigrationServiceImpl::userFingerprint);
+    }
+
+    /**
+     * Roles are hashed sorted, since Cassandra returns them in no particular
+     * order and a user should not count as changed when only that order does.
+     *
+     * @return Fingerprint of the user properties the update sets
+     */
+    static long userFingerprint(Map<String, Object> update) {
+        Object roles = update.get("role");
+        if (roles instanceof List) {
+            List<String> sorted = new ArrayList<>();
+            for (Object role : (List<?>) roles) {
+                sorted.add(role == null ? null : role.toString());
+            }
+            sorted.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+            roles = sorted;
+        }
+        return Fingerprints.hash(update.get("organisationId"), update.get("designation"), roles);
+    }
+
+    /**
+     * Import files of the job, listed with their import command in the job status.
+     */
+    private AdminImportWriter newImportWriter(MigrationJob job) {
+        AdminImportWriter importWriter = new AdminImportWriter(importDir.resolve(job.getJobId()), importShards,
+                importGzip, importRelationshipProperties);
+        job.addStatus("import", importWriter::toMap);
+        return importWriter;
+    }
+
+    /**
+     * Engine keeping up to neo4j.write.max.in.flight transactions of the job in
+     * flight, listed in the job status.
+     */
+    private AsyncWriteEngine newWriteEngine(MigrationJob job) {
+        return newWriteEngine(job, neo4jWriteMaxInFlight);
+    }
+
+    private AsyncWriteEngine newWriteEngine(MigrationJob job, int maxInFlight) {
+        AsyncWriteEngine writes = new AsyncWriteEngine("neo4jWrites-" + job.getJobId(), maxInFlight,
+                WRITE_POOL_SIZE);
+        job.addStatus("writes", writes::toMap);
+        return writes;
+    }
+
+    private DeadLetterFile newDeadLetterFile(MigrationJob job) {
+        return new DeadLetterFile(deadLetterDir.resolve(job.getJobId() + "-users.csv"), Constants.ID);
+    }
+
+    /**
+     * Timeouts and unavailable, overloaded or busy hosts, as opposed to errors
+     * that retrying with less load would not fix.
+     */
+    private static boolean isCassandraOverload(Throwable e) {
+        return e instanceof QueryExecutionException || e instanceof OperationTimedOutException
+                || e instanceof BusyPoolException || e instanceof NoHostAvailableException;
+    }
+
+    /**
+     * Transient errors such as deadlocks and lock acquisition timeouts, and a
+     * lost or unreachable server.
+     */
+    private static boolean isNeo4jOverload(Throwable e) {
+        return e instanceof TransientException || e instanceof ServiceUnavailableException
+                || e instanceof SessionExpiredException;
+    }
+
+    /**
+     * Resolves a file or directory below ingest.base.dir. A directory yields its
+     * CSV files in name order. Paths escaping the base directory are rejected.
+     */
+    private List<Path> resolveIngestPath(String path) {
+        Path target = ingestBaseDir.resolve(path).normalize();
+        if (!target.startsWith(ingestBaseDir)) {
+            throw new IllegalArgumentException("Path must be inside " + ingestBaseDir);
+        }
+        try {
+            if (Files.isRegularFile(target)) {
+                checkSupportedCompression(target, path);
+                return Collections.singletonList(target);
+            }
+            if (!Files.isDirectory(target)) {
+                throw new IllegalArgumentException("No such file or directory: " + path);
+            }
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(target)) {
+                files = listing.filter(Files::isRegularFile)
+                        .filter(file -> isCsvFileName(file.getFileName().toString().toLowerCase()))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("No CSV files in " + path);
+            }
+            for (Path file : files) {
+                checkSupportedCompression(file, ingestBaseDir.relativize(file).toString());
+            }
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list " + path, e);
+        }
+    }
+
+    /**
+     * Whether the name is of a CSV file, possibly compressed. The compression
+     * itself is detected from the content.
+     */
+    private static boolean isCsvFileName(String name) {
+        for (String suffix : CSV_FILE_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rejects zstd input up front, since no zstd codec is on the classpath.
+     */
+    private static void checkSupportedCompression(Path file, String name) {
+        try {
+            if (Compression.detect(file) == Compression.ZSTD) {
+                throw new IllegalArgumentException(name
+                        + " is zstd compressed, which is not supported, compress it with gzip, bzip2 or lz4");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + name, e);
+        }
+    }
+
+    /**
+     * Moves the upload out of the servlet temp directory, which is cleaned up
+     * when the request completes, so the job can read it later, and checks its
+     * compression. The container renames its temp file rather than copying it
+     * when both are on one file system, as with the default temp directories.
+     */
+    private Path stageUpload(MultipartFile file) {
+        try {
+            Path input = Files.createTempFile("migration-", ".csv");
+            file.transferTo(input.toFile());
+            try {
+                checkSupportedCompression(input, file.getOriginalFilename());
+            } catch (RuntimeException e) {
+                Files.deleteIfExists(input);
+                throw e;
+            }
+            return input;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store uploaded file " + file.getOriginalFilename(), e);
+        }
+    }
+
+    private Response jobResponse(MigrationJob job) {
+        Response response = new Response();
+        response.putAll(job.toMap());
+        return response;
     }
 
-    public void processUserBatchOptimized(List<String> userIds) {
-        logger.info("Starting processing batch of {} user IDs", userIds.size());
-        List<Map<String, Object>> userInfoList = fetchUserInfo(userIds);
-        Map<String, List<String>> userIdToRoles = fetchUserRoles(userIds);
-        List<Map<String, Object>> neo4jUpdates = buildNeo4jUpdates(userInfoList, userIdToRoles);
-        bulkUpdateNeo4j(neo4jUpdates);
-        logger.info("Finished processing batch of {} user IDs", userIds.size());
+    /**
+     * Reads one token sub-range of the user table page by page. Unless roles come
+     * from the roles column, they are read from user_roles with the same token
+     * bounds as each page, which covers exactly the users of that page since both
+     * tables are partitioned by user ID.
+     */
+    private void scanUserRange(TokenRange range, AdaptiveController controller, Consumer<UserBatch> emitter) {
+        long[] pageStart = {System.nanoTime()};
+        try {
+            cassandraOperation.scanTokenRange(Constants.KEYSPACE_SUNBIRD, Constants.TABLE_USER, Constants.ID,
+                    userFields, range, controller.getBatchSize(), page -> {
+                        RecordBatch users = page.getRecords();
+                        long pageRead = System.nanoTime();
+                        migrationMetrics.recordCassandraFetch(Constants.TABLE_USER, pageRead - pageStart[0],
+                                users.size());
+                        Map<String, List<String>> userIdToRoles;
+                        if (rolesFromColumn) {
+                            userIdToRoles = groupColumnRolesByUser(users);
+                        } else {
+                            RecordBatch roleRecords = cassandraOperation.getRecordsByTokenRange(
+                                    Constants.KEYSPACE_SUNBIRD, Constants.TABLE_USER_ROLES, Constants.USER_ID,
+                                    USER_ROLE_FIELDS, page.getStartToken(), page.getEndToken());
+                            migrationMetrics.recordCassandraFetch(Constants.TABLE_USER_ROLES,
+                                    System.nanoTime() - pageRead, roleRecords.size());
+                            userIdToRoles = groupRolesByUser(roleRecords);
+                        }
+                        controller.onCassandraRead(users.size(), System.nanoTime() - pageStart[0]);
+                        int idColumn = users.indexOf(Constants.ID);
+                        List<String> userIds = new ArrayList<>(users.size());
+                        for (int row = 0; row < users.size(); row++) {
+                            userIds.add(users.getString(row, idColumn));
+                        }
+                        logger.info("Scanned {} users with roles of {} in token range {}", userIds.size(),
+                                userIdToRoles.size(), range);
+                        emitter.accept(new UserBatch(userIds, users, userIdToRoles));
+                        pageStart[0] = System.nanoTime();
+                    });
+        } catch (RuntimeException e) {
+            if (isCassandraOverload(e)) {
+                controller.onCassandraOverload(e);
+            }
+            throw e;
+        }
     }
 
-    private List<Map<String, Object>> fetchUserInfo(List<String> userIds) {
+    /**
+     * Reads the users and, unless roles come from the roles column, their roles.
+     * Both queries are issued at once and joined, so the batch waits for the
+     * slower of the two rather than for both in turn.
+     */
+    private void fetchUserBatch(UserBatch batch, AdaptiveController controller) {
+        List<String> userIds = batch.getUserIds();
+        long start = System.nanoTime();
+        RecordBatch userRecords;
+        Map<String, List<String>> userIdToRoles;
+        try {
+            CompletableFuture<RecordBatch> userQuery = fetchRecords(Constants.TABLE_USER, Constants.ID, userIds,
+                    userFields);
+            CompletableFuture<RecordBatch> roleQuery = rolesFromColumn ? null
+                    : fetchRecords(Constants.TABLE_USER_ROLES, Constants.USER_ID, userIds, USER_ROLE_FIELDS);
+            userRecords = userQuery.join();
+            userIdToRoles = roleQuery == null ? groupColumnRolesByUser(userRecords)
+                    : groupRolesByUser(roleQuery.join());
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (isCassandraOverload(cause)) {
+                controller.onCassandraOverload(cause);
+            }
+            throw e;
+        }
+        controller.onCassandraRead(userIds.size(), System.nanoTime() - start);
+        logger.info("Fetched {} users for batch of {} user IDs", userRecords.size(), userIds.size());
+        batch.setUserRecords(userRecords, userIdToRoles);
+    }
+
+    private CompletableFuture<RecordBatch> fetchRecords(String table, String key, List<String> userIds,
+                                                        List<String> fields) {
         Map<String, Object> propertyMap = new HashMap<>();
-        propertyMap.put(Constants.ID, userIds);
-        return cassandraOperation.getRecordsByProperties(
-                Constants.KEYSPACE_SUNBIRD, Constants.TABLE_USER, propertyMap,
-                Arrays.asList("id", "rootorgid", "profiledetails", "roles")
-        );
-    }
-
-    private Map<String, List<String>> fetchUserRoles(List<String> userIds) {
-        Map<String, Object> roleQueryMap = new HashMap<>();
-        roleQueryMap.put("userid", userIds);
-        List<Map<String, Object>> allRoles = cassandraOperation.getRecordsByProperties(
-                Constants.KEYSPACE_SUNBIRD, "user_roles", roleQueryMap,
-                Arrays.asList("userid", "role", "scope")
-        );
-        ObjectMapper mapper = new ObjectMapper();
+        propertyMap.put(key, userIds);
+        long start = System.nanoTime();
+        return cassandraOperation.getRecordsByPropertiesAsync(Constants.KEYSPACE_SUNBIRD, table, propertyMap, fields)
+                .whenComplete((records, error) -> {
+                    if (records != null) {
+                        migrationMetrics.recordCassandraFetch(table, System.nanoTime() - start, records.size());
+                    }
+                });
+    }
+
+    /**
+     * Roles from the roles column of the user rows, which holds a list, or a
+     * JSON array in older rows. Unlike user_roles it has no scope to validate.
+     */
+    private Map<String, List<String>> groupColumnRolesByUser(RecordBatch userRecords) {
+        int idColumn = userRecords.indexOf(Constants.ID);
+        int rolesColumn = userRecords.indexOf("roles");
         Map<String, List<String>> userIdToRoles = new HashMap<>();
-        for (Map<String, Object> roleRecord : allRoles) {
-            String userId = (String) roleRecord.get("userid");
-            String role = (String) roleRecord.get("role");
-            Object scopeObj = roleRecord.get("scope");
-            try {
-                if (scopeObj instanceof String && !((String) scopeObj).trim().isEmpty()) {
-                    mapper.readValue((String) scopeObj, new TypeReference<List<Map<String, Object>>>() {});
+        for (int row = 0; row < userRecords.size(); row++) {
+            String userId = userRecords.getString(row, idColumn);
+            Object value = userRecords.get(row, rolesColumn);
+            List<String> roles = new ArrayList<>();
+            if (value instanceof Collection) {
+                for (Object role : (Collection<?>) value) {
+                    roles.add(String.valueOf(role));
                 }
-            } catch (Exception e) {
-                logger.warn("Failed to parse scope JSON for userId {}: {}", userId, e.getMessage());
+            } else if (value instanceof String && StringUtils.isNotBlank((String) value)) {
+                try {
+                    for (JsonNode role : JsonSupport.MAPPER.readTree((String) value)) {
+                        roles.add(role.asText());
+                    }
+                } catch (IOException e) {
+                    logger.warn("Invalid roles JSON for userId {}: {}", userId, value);
+                }
+            }
+            if (!roles.isEmpty()) {
+                userIdToRoles.put(userId, roles);
+            }
+        }
+        return userIdToRoles;
+    }
+
+    private Map<String, List<String>> groupRolesByUser(RecordBatch allRoles) {
+        int userIdColumn = allRoles.indexOf("userid");
+        int roleColumn = allRoles.indexOf("role");
+        int scopeColumn = allRoles.indexOf("scope");
+        Map<String, List<String>> userIdToRoles = new HashMap<>();
+        for (int row = 0; row < allRoles.size(); row++) {
+            String userId = allRoles.getString(row, userIdColumn);
+            String role = allRoles.getString(row, roleColumn);
+            Object scopeObj = allRoles.get(row, scopeColumn);
+            if (scopeObj instanceof String && !((String) scopeObj).trim().isEmpty()
+                    && !JsonSupport.isArrayOfObjects((String) scopeObj)) {
+                logger.warn("Invalid scope JSON for userId {}: {}", userId, scopeObj);
                 continue;
             }
             userIdToRoles.computeIfAbsent(userId, k -> new ArrayList<>()).add(role);
@@ -101,28 +861,34 @@ public class DataMigrationServiceImpl implements DataMigrationService {
         return userIdToRoles;
     }
 
-    private List<Map<String, Object>> buildNeo4jUpdates(List<Map<String, Object>> userInfoList, Map<String, List<String>> userIdToRoles) {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Map<String, Object>> neo4jUpdates = new ArrayList<>();
-        for (Map<String, Object> userInfo : userInfoList) {
-            String userId = (String) userInfo.get("id");
-            String rootOrgId = (String) userInfo.get("rootorgid");
+    List<Map<String, Object>> buildNeo4jUpdates(RecordBatch userRecords, Map<String, List<String>> userIdToRoles) {
+        int idColumn = userRecords.indexOf("id");
+        int rootOrgIdColumn = userRecords.indexOf("rootorgid");
+        int profileDetailsColumn = userRecords.indexOf("profiledetails");
+        List<Map<String, Object>> neo4jUpdates = new ArrayList<>(userRecords.size());
+        for (int row = 0; row < userRecords.size(); row++) {
+            String userId = userRecords.getString(row, idColumn);
+            String rootOrgId = userRecords.getString(row, rootOrgIdColumn);
             List<String> roles = userIdToRoles.getOrDefault(userId, Collections.emptyList());
             boolean missingIdOrOrg = StringUtils.isEmpty(userId) || StringUtils.isEmpty(rootOrgId);
             boolean missingRoles = CollectionUtils.isEmpty(roles);
             if (missingIdOrOrg || missingRoles) {
                 if (missingIdOrOrg) {
-                    logger.warn("User is missing ID or rootOrgId: {}", userInfo);
+                    logger.warn("User is missing ID or rootOrgId: {}", userRecords.toMap(row));
+                    migrationMetrics.recordSkipped(MigrationMetrics.SKIP_MISSING_ID_OR_ORG, 1);
                 }
                 if (!missingIdOrOrg && missingRoles) {
                     logger.warn("Skipping user {} due to missing roles", userId);
+                    migrationMetrics.recordSkipped(MigrationMetrics.SKIP_MISSING_ROLES, 1);
                 }
                 continue;
             }
-            String profileDetailsJson = (String) userInfo.get("profiledetails");
+            String profileDetailsJson = userRecords.getString(row, profileDetailsColumn);
             String designation = null;
             if (StringUtils.isNotEmpty(profileDetailsJson)) {
-                designation = extractDesignation(profileDetailsJson, mapper, userId);
+                long parseStart = System.nanoTime();
+                designation = extractDesignation(profileDetailsJson, userId);
+                migrationMetrics.recordDesignationParse(System.nanoTime() - parseStart);
             }
             Map<String, Object> updateObj = new HashMap<>();
             updateObj.put("userId", userId);
@@ -134,78 +900,137 @@ public class DataMigrationServiceImpl implements DataMigrationService {
         return neo4jUpdates;
     }
 
-    private void bulkUpdateNeo4j(List<Map<String, Object>> neo4jUpdates) {
-        if (neo4jUpdates.isEmpty()) return;
-        try (Session session = neo4jDriver.session(); Transaction tx = session.beginTransaction()) {
-            String query = "UNWIND $users AS user " +
-                    "MERGE (u:userV3 {userId: user.userId}) " +
-                    "SET u.organisationId = user.organisationId, " +
-                    "u.designation = user.designation, " +
-                    "u.role = user.role";
-            Map<String, Object> params = new HashMap<>();
-            params.put("users", neo4jUpdates);
-            tx.run(query, params);
-            tx.success();
+    /**
+     * Starts writing the users in one transaction, once the Neo4j throttle lets
+     * it pass. The write latency reported to the controller excludes the
+     * throttle wait.
+     *
+     * @return Completed when the transaction is committed, or with the driver
+     *         error if it failed
+     */
+    private CompletionStage<ResultSummary> writeUsersAsync(List<Map<String, Object>> neo4jUpdates,
+                                                           AdaptiveController controller) {
+        throttles.getNeo4j().acquire(1, neo4jUpdates.size());
+        long start = System.nanoTime();
+        Map<String, Object> params = new HashMap<>();
+        params.put("users", neo4jUpdates);
+        return runInTransactionAsync(USER_MERGE_QUERY, params).whenComplete((summary, error) -> {
+            long duration = System.nanoTime() - start;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                migrationMetrics.recordNeo4jWrite("users", duration, neo4jUpdates.size(), false);
+                if (isNeo4jOverload(cause)) {
+                    controller.onNeo4jOverload(cause);
+                }
+                return;
+            }
+            migrationMetrics.recordNeo4jWrite("users", duration, neo4jUpdates.size(), true);
+            controller.onNeo4jWrite(neo4jUpdates.size(), duration);
             logger.info("Bulk updated {} users in Neo4j", neo4jUpdates.size());
-        } catch (Exception e) {
-            logger.error("Neo4j session error: {}", e.getMessage());
-        }
+        });
     }
 
-    public List<List<String>> streamUserIdsInBatches(MultipartFile file, int batchSize) throws Exception {
-        List<List<String>> batches = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) throw new RuntimeException("CSV file is empty");
-            String[] headers = headerLine.split(",");
-            int idColumnIndex = -1;
-            for (int i = 0; i < headers.length; i++) {
-                if ("id".equalsIgnoreCase(headers[i].trim())) {
-                    idColumnIndex = i;
-                    break;
-                }
+    /**
+     * Runs the query in an explicit transaction of a session of its own without
+     * blocking, so retries stay with the caller. The transaction is rolled back
+     * if the query or the commit fails.
+     */
+    private CompletionStage<ResultSummary> runInTransactionAsync(String query, Map<String, Object> params) {
+        Session session = neo4jDriver.session();
+        return session.beginTransactionAsync()
+                .thenCompose(tx -> tx.runAsync(query, params)
+                        .thenCompose(StatementResultCursor::consumeAsync)
+                        .thenCompose(summary -> tx.commitAsync().thenApply(ignored -> summary))
+                        .handle((summary, error) -> error == null
+                                ? CompletableFuture.completedFuture(summary)
+                                : tx.rollbackAsync().<ResultSummary>handle((ignored, rollbackError) -> {
+                                    throw error instanceof CompletionException
+                                            ? (CompletionException) error : new CompletionException(error);
+                                }))
+                        .thenCompose(result -> result))
+                .whenComplete((summary, error) -> session.closeAsync());
+    }
+
+    public void streamUserIdsInBatches(Path input, int batchSize, CheckpointJournal journal,
+                                       Consumer<UserBatch> batchConsumer) throws Exception {
+        streamUserIdsInBatches(input, () -> batchSize, journal, position -> {
+        }, batchConsumer);
+    }
+
+    /**
+     * Reads the user ID file in batches tagged with the byte range of their rows.
+     * A plain file is scanned through a memory map, a compressed one is
+     * decompressed on its own thread ahead of the scan, and only the id column
+     * is decoded. Offsets are those of the decompressed content. With a journal, reading starts at
+     * its resume offset and batches it already records as completed are not
+     * emitted.
+     *
+     * @param batchSize Asked for the size of every batch before it is started
+     * @param progress  Called after every batch with the number of bytes of the
+     *                  file as stored read so far
+     */
+    public void streamUserIdsInBatches(Path input, IntSupplier batchSize, CheckpointJournal journal,
+                                       LongConsumer progress, Consumer<UserBatch> batchConsumer) throws Exception {
+        Compression compression = Compression.detect(input);
+        if (compression == Compression.NONE) {
+            try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+                MappedCsvScanner scanner = new MappedCsvScanner(channel, Constants.ID);
+                scanUserIds(input, scanner, scanner::getOffset, batchSize, journal, progress, batchConsumer);
             }
-            if (idColumnIndex == -1) throw new RuntimeException("No 'id' column found");
-            List<String> currentBatch = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length > idColumnIndex) {
-                    String userId = values[idColumnIndex].trim();
-                    currentBatch.add(userId);
-                    if (currentBatch.size() == batchSize) {
-                        batches.add(new ArrayList<>(currentBatch));
-                        currentBatch.clear();
-                    }
-                }
+        } else {
+            try (CountingInputStream stored = new CountingInputStream(Files.newInputStream(input));
+                 InputStream in = new ReadAheadInputStream(compression.decompress(stored),
+                         "decompress-" + input.getFileName())) {
+                StreamingCsvScanner scanner = new StreamingCsvScanner(in, Constants.ID);
+                scanUserIds(input, scanner, stored::getCount, batchSize, journal, progress, batchConsumer);
             }
-            if (!currentBatch.isEmpty()) {
-                batches.add(currentBatch);
+        }
+    }
+
+    private void scanUserIds(Path input, CsvColumnScanner scanner, LongSupplier position, IntSupplier batchSize,
+                             CheckpointJournal journal, LongConsumer progress,
+                             Consumer<UserBatch> batchConsumer) throws IOException {
+        long dataStart = scanner.getDataStart();
+        long resumeOffset = journal == null ? dataStart : journal.resumeOffset(dataStart);
+        if (resumeOffset > dataStart) {
+            logger.info("Resuming {} from checkpoint at byte {}", input, resumeOffset);
+            scanner.seek(resumeOffset);
+        }
+        long batchStart = scanner.getOffset();
+        int currentSize = batchSize.getAsInt();
+        List<String> currentBatch = new ArrayList<>(currentSize);
+        String userId;
+        while ((userId = scanner.nextValue()) != null) {
+            currentBatch.add(userId);
+            if (currentBatch.size() >= currentSize) {
+                emitUserIdBatch(currentBatch, batchStart, scanner.getOffset(), journal, batchConsumer);
+                progress.accept(position.getAsLong());
+                currentSize = batchSize.getAsInt();
+                currentBatch = new ArrayList<>(currentSize);
+                batchStart = scanner.getOffset();
             }
         }
-        return batches;
+        if (!currentBatch.isEmpty()) {
+            emitUserIdBatch(currentBatch, batchStart, scanner.getOffset(), journal, batchConsumer);
+        }
+        progress.accept(position.getAsLong());
     }
 
-    private String extractDesignation(String profileDetailsJson, ObjectMapper mapper, String userId) {
+    private void emitUserIdBatch(List<String> userIds, long startOffset, long endOffset, CheckpointJournal journal,
+                                 Consumer<UserBatch> batchConsumer) {
+        if (journal != null && journal.isCompleted(startOffset, endOffset)) {
+            logger.debug("Skipping batch at bytes {}-{}, already checkpointed", startOffset, endOffset);
+            return;
+        }
+        batchConsumer.accept(new UserBatch(userIds, startOffset, endOffset));
+    }
+
+    String extractDesignation(String profileDetailsJson, String userId) {
         try {
-            Map<String, Object> userProfileDetailsMap = mapper.readValue(
-                    profileDetailsJson, new TypeReference<Map<String, Object>>() {});
-            Object professionDetailsObj = userProfileDetailsMap.get("professionalDetails");
-            if (professionDetailsObj instanceof List) {
-                List<?> professionDetails = (List<?>) professionDetailsObj;
-                if (!CollectionUtils.isEmpty(professionDetails)) {
-                    Object first = professionDetails.get(0);
-                    if (first instanceof Map) {
-                        Map<?, ?> professionDetailsMap = (Map<?, ?>) first;
-                        logger.debug("Extracted designation for user {}: {}", userId, professionDetailsMap.get("designation"));
-                        return (String) professionDetailsMap.get("designation");
-                    }
-                }
-            } else if (professionDetailsObj instanceof Map) {
-                Map<?, ?> professionDetailsMap = (Map<?, ?>) professionDetailsObj;
-                logger.debug("Extracted designation for user {}: {}", userId, professionDetailsMap.get("designation"));
-                return (String) professionDetailsMap.get("designation");
-            }
+            String designation = designationExtractor.extractFirst(profileDetailsJson);
+            logger.debug("Extracted designation for user {}: {}", userId, designation);
+            return designation;
         } catch (IOException e) {
             logger.error("Failed to parse profile details for user {}: {}", userId, e.getMessage());
         }
@@ -214,28 +1039,155 @@ public class DataMigrationServiceImpl implements DataMigrationService {
 
 
     @Override
-    public Response updateRelaionsUsers(MultipartFile file) {
-        List<List<List<String>>> userIdBatches = null;
+    public Response updateRelaionsUsers(MultipartFile file, boolean parallel, SinkType sink) {
+        Path input = stageUpload(file);
+        MigrationJob job = jobManager.submit("updateRelationsUsers", j -> {
+            try {
+                runUpdateRelations(input, parallel, sink, j);
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        });
+        return jobResponse(job);
+    }
+
+    private void runUpdateRelations(Path input, boolean parallel, SinkType sink, MigrationJob job) throws Exception {
+        job.setProgressTotal(Files.size(input));
         try {
-            userIdBatches = streamUserRelationsInBatches(file, BATCH_SIZE);
-        }catch (Exception e) {
+            if (sink == SinkType.IMPORT) {
+                try (AdminImportWriter importWriter = newImportWriter(job)) {
+                    streamUserRelationsInBatches(input, relationsParallelBatchSize, job::addProgress, batch -> {
+                        job.checkCancelled();
+                        List<Map<String, Object>> rows = toRelationRows(batch, job);
+                        importWriter.writeRelations(rows);
+                        job.addWritten(rows.size());
+                    });
+                }
+            } else {
+                preflightRelationWrites(parallel ? relationsPartitions : 1, job);
+                UserNodeResolver resolver = newNodeResolver(job);
+                try (DeadLetterFile missingEndpoints = new DeadLetterFile(
+                        deadLetterDir.resolve(job.getJobId() + "-relations.csv"), "userId,relationUserId")) {
+                    job.addStatus("missingEndpoints", missingEndpoints::toMap);
+                    if (parallel) {
+                        try (PartitionedRelationWriter writer = new PartitionedRelationWriter(relationsPartitions,
+                                "userId", "relationUserId",
+                                rows -> writeRelationsBucket(rows, resolver, missingEndpoints, job))) {
+                            streamUserRelationsInBatches(input, relationsParallelBatchSize, job::addProgress,
+                                    batch -> {
+                                        job.checkCancelled();
+                                        writer.write(toRelationRows(batch, job));
+                                    });
+                        }
+                    } else {
+                        // One transaction at a time, concurrent ones would lock shared endpoint nodes.
+                        try (AsyncWriteEngine writes = newWriteEngine(job, 1)) {
+                            streamUserRelationsInBatches(input, relationsBatchSize, job::addProgress, batch -> {
+                                job.checkCancelled();
+                                List<Map<String, Object>> rows = resolveEndpoints(toRelationRows(batch, job),
+                                        resolver, missingEndpoints, job);
+                                if (!rows.isEmpty()) {
+                                    writes.submit(() -> writeRelationsAsync(rows, job).toCompletableFuture(),
+                                            ignored -> {
+                                            });
+                                }
+                            });
+                            writes.awaitIdle();
+                        }
+                    }
+                }
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
             logger.error("Error reading user relations from file: {}", e.getMessage(), e);
+            throw e;
         }
-        try (Session session = neo4jDriver.session(); Transaction tx = session.beginTransaction()) {
-            processUserRelationsBatches(userIdBatches, tx);
-            tx.success();
-        } catch (Exception e) {
-            logger.error("Neo4j session error: {}", e.getMessage());
+    }
+
+    /**
+     * Parses the relations file in record-aligned chunks on the parse pool and
+     * hands the batches to the consumer on the calling thread as chunks are
+     * parsed, so batches of different chunks arrive in no particular order. A
+     * compressed file is decompressed into chunks on the heap while earlier
+     * chunks are parsed.
+     *
+     * @param progress Called with the number of bytes of the file as stored
+     *                 read since it was last called
+     */
+    public void streamUserRelationsInBatches(Path input, int batchSize, LongConsumer progress,
+                                             Consumer<List<List<String>>> batchConsumer) throws Exception {
+        Compression compression = Compression.detect(input);
+        if (compression == Compression.NONE) {
+            try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+                if (channel.size() == 0) throw new RuntimeException("CSV file is empty");
+                ChunkedCsvReader reader = new ChunkedCsvReader(channel, csvParseChunkSize, true);
+                progress.accept(reader.getDataStart());
+                readRelations(reader, batchSize, progress, batchConsumer);
+            }
+        } else {
+            try (CountingInputStream stored = new CountingInputStream(Files.newInputStream(input));
+                 InputStream in = compression.decompress(stored)) {
+                ChunkedCsvReader reader = new ChunkedCsvReader(in,
+                        (int) Math.min(csvParseChunkSize, STREAM_PARSE_CHUNK_SIZE), true);
+                // Chunks finish out of order, so only the largest count seen is reported.
+                AtomicLong reported = new AtomicLong();
+                readRelations(reader, batchSize, length -> {
+                    long count = stored.getCount();
+                    long previous = reported.getAndAccumulate(count, Math::max);
+                    if (count > previous) {
+                        progress.accept(count - previous);
+                    }
+                }, batchConsumer);
+            }
+        }
+    }
+
+    /**
+     * @param onParsed Called with the length of every parsed chunk
+     */
+    private void readRelations(ChunkedCsvReader reader, int batchSize, LongConsumer onParsed,
+                               Consumer<List<List<String>>> batchConsumer) throws Exception {
+        StageQueue<List<List<String>>> batches = new StageQueue<>("relationBatches",
+                2 * parsePool.getParallelism(), 1);
+        CompletableFuture<Void> parsing = CompletableFuture.runAsync(() -> {
+            try {
+                reader.read(parsePool, (chunk, offset) -> {
+                    int length = chunk.remaining();
+                    parseRelationsChunk(chunk, batchSize, batches::put);
+                    onParsed.accept(length);
+                });
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                batches.close();
+            }
+        }, parsePool);
+        try {
+            List<List<String>> batch;
+            while ((batch = batches.take()) != null) {
+                batchConsumer.accept(batch);
+            }
+        } catch (RuntimeException e) {
+            reader.abort();
+            batches.abort();
+            throw e;
+        }
+        try {
+            parsing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
-        return null;
     }
 
-    public List<List<List<String>>> streamUserRelationsInBatches(MultipartFile file, int batchSize) throws Exception {
-        List<List<List<String>>> batches = new ArrayList<>();
-        try (CSVReader csvReader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
-            String[] header = csvReader.readNext();
-            if (header == null) throw new RuntimeException("CSV file is empty");
-            List<List<String>> currentBatch = new ArrayList<>();
+    private void parseRelationsChunk(ByteBuffer chunk, int batchSize, Consumer<List<List<String>>> batchConsumer)
+            throws IOException, CsvValidationException {
+        try (CSVReader csvReader = new CSVReader(new InputStreamReader(new ByteBufferInputStream(chunk),
+                StandardCharsets.UTF_8))) {
+            List<List<String>> currentBatch = new ArrayList<>(batchSize);
             String[] values;
             while ((values = csvReader.readNext()) != null) {
                 if (values.length >= 3) {
@@ -246,37 +1198,259 @@ public class DataMigrationServiceImpl implements DataMigrationService {
                     );
                     currentBatch.add(relation);
                     if (currentBatch.size() == batchSize) {
-                        batches.add(new ArrayList<>(currentBatch));
-                        currentBatch.clear();
+                        batchConsumer.accept(currentBatch);
+                        currentBatch = new ArrayList<>(batchSize);
                     }
                 }
             }
             if (!currentBatch.isEmpty()) {
-                batches.add(currentBatch);
+                batchConsumer.accept(currentBatch);
             }
         }
-        return batches;
     }
 
-    public void processUserRelationsBatches(List<List<List<String>>> userIdBatches, Transaction tx) throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-        for (List<List<String>> batch : userIdBatches) {
-            for (List<String> row : batch) {
-                String userId = row.get(0);
-                String relationshipTypeJson = row.get(1);
-                String relationUserId = row.get(2);
-                Map<String, Object> relProps = mapper.readValue(toValidJson(relationshipTypeJson), new TypeReference<Map<String, Object>>() {});
-                String relQuery = "MATCH (u:userV3 {userId: $userId}), (r:userV3 {userId: $relationUserId}) " +
-                        "MERGE (u)-[rel:connect]->(r) " +
-                        "SET rel += $relProps";
-                Map<String, Object> params = new HashMap<>();
-                params.put("userId", userId);
-                params.put("relationUserId", relationUserId);
-                params.put("relProps", relProps);
-                logger.info("Processing relation for userId: {}, relationUserId: {}, relProps: {}", userId, relationUserId, relProps);
-                tx.run(relQuery, params);
+    List<Map<String, Object>> toRelationRows(List<List<String>> batch, MigrationJob job) {
+        List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+        for (List<String> row : batch) {
+            String userId = row.get(0);
+            String relationshipTypeJson = row.get(1);
+            String relationUserId = row.get(2);
+            try {
+                Map<String, Object> relProps = JsonSupport.MAP_READER.readValue(toValidJson(relationshipTypeJson));
+                Map<String, Object> relation = new HashMap<>();
+                relation.put("userId", userId);
+                relation.put("relationUserId", relationUserId);
+                relation.put("relProps", relProps);
+                rows.add(relation);
+            } catch (Exception e) {
+                logger.warn("Skipping relation for userId: {}, relationUserId: {}, invalid relProps {}: {}",
+                        userId, relationUserId, relationshipTypeJson, e.getMessage());
+            }
+        }
+        job.addRead(batch.size());
+        job.addSkipped(batch.size() - rows.size());
+        migrationMetrics.recordSkipped(MigrationMetrics.SKIP_INVALID_ROW, batch.size() - rows.size());
+        return rows;
+    }
+
+    /**
+     * Writes one bucket of the partitioned import on its own session, in
+     * transactions of at most relations.batch.size rows.
+     */
+    private void writeRelationsBucket(List<Map<String, Object>> rows, UserNodeResolver resolver,
+                                      DeadLetterFile missingEndpoints, MigrationJob job) {
+        try (Session session = neo4jDriver.session()) {
+            for (List<Map<String, Object>> chunk : ListUtils.partition(rows, relationsBatchSize)) {
+                writeRelations(session, resolveEndpoints(chunk, resolver, missingEndpoints, job), job);
+            }
+        }
+    }
+
+    /**
+     * Resolves the endpoints of the relations to node IDs. Relations with a
+     * missing endpoint are skipped and listed in the missing endpoints file.
+     *
+     * @return Rows of the other relations with startNodeId, endNodeId and
+     *         relProps
+     */
+    private List<Map<String, Object>> resolveEndpoints(List<Map<String, Object>> relations,
+                                                       UserNodeResolver resolver, DeadLetterFile missingEndpoints,
+                                                       MigrationJob job) {
+        List<String> userIds = new ArrayList<>(relations.size() * 2);
+        for (Map<String, Object> relation : relations) {
+            userIds.add((String) relation.get("userId"));
+            userIds.add((String) relation.get("relationUserId"));
+        }
+        Map<String, Long> nodeIds = resolver.resolve(userIds);
+        List<Map<String, Object>> rows = new ArrayList<>(relations.size());
+        for (Map<String, Object> relation : relations) {
+            String userId = (String) relation.get("userId");
+            String relationUserId = (String) relation.get("relationUserId");
+            Long startNodeId = nodeIds.get(userId);
+            Long endNodeId = nodeIds.get(relationUserId);
+            if (startNodeId == null || endNodeId == null) {
+                missingEndpoints.write(userId + "," + relationUserId, startNodeId == null
+                        ? (endNodeId == null ? "userId and relationUserId not found" : "userId not found")
+                        : "relationUserId not found");
+                continue;
             }
+            Map<String, Object> row = new HashMap<>(4);
+            row.put("startNodeId", startNodeId);
+            row.put("endNodeId", endNodeId);
+            row.put("relProps", relation.get("relProps"));
+            rows.add(row);
         }
+        int missing = relations.size() - rows.size();
+        if (missing > 0) {
+            job.addSkipped(missing);
+            migrationMetrics.recordSkipped(MigrationMetrics.SKIP_MISSING_ENDPOINT, missing);
+        }
+        return rows;
+    }
+
+    /**
+     * Checks that the user merge is planned with an index and estimates its
+     * throughput with a probe of new users that is rolled back.
+     */
+    private void preflightUserWrites(MigrationJob job) {
+        Map<String, Statement> templates = new LinkedHashMap<>();
+        templates.put("users", new Statement(USER_MERGE_QUERY,
+                Collections.singletonMap("users", preflightUsers(1))));
+        preflight(templates, new Statement(USER_MERGE_QUERY,
+                Collections.singletonMap("users", preflightUsers(preflightProbeRows))), WRITE_POOL_SIZE, job);
+    }
+
+    /**
+     * Checks that the endpoint lookup and the relation merge are planned with
+     * an index or by node ID, and estimates the lookup throughput.
+     */
+    private void preflightRelationWrites(int connections, MigrationJob job) {
+        Map<String, Statement> templates = new LinkedHashMap<>();
+        templates.put("nodeIdLookup", new Statement(NODE_ID_LOOKUP_QUERY,
+                Collections.singletonMap("userIds", Collections.singletonList("preflight"))));
+        Map<String, Object> row = new HashMap<>();
+        row.put("startNodeId", -1L);
+        row.put("endNodeId", -1L);
+        row.put("relProps", Collections.emptyMap());
+        templates.put("relations", new Statement(RELATION_MERGE_QUERY,
+                Collections.singletonMap("rows", Collections.singletonList(row))));
+        List<String> probeIds = new ArrayList<>(preflightProbeRows);
+        for (Map<String, Object> user : preflightUsers(preflightProbeRows)) {
+            probeIds.add((String) user.get("userId"));
+        }
+        preflight(templates, new Statement(NODE_ID_LOOKUP_QUERY, Collections.singletonMap("userIds", probeIds)),
+                connections, job);
+    }
+
+    private void preflight(Map<String, Statement> templates, Statement probe, int connections, MigrationJob job) {
+        if (!preflightEnabled) {
+            return;
+        }
+        Map<String, Object> report = new Neo4jPreflight(neo4jDriver, preflightCreateSchema,
+                preflightIndexTimeoutSeconds).run("userV3", "userId", templates, probe, preflightProbeRows,
+                connections);
+        job.addStatus("preflight", () -> report);
+    }
+
+    /**
+     * @return Users with userIds that do not exist, for planning and probing
+     */
+    private static List<Map<String, Object>> preflightUsers(int count) {
+        List<Map<String, Object>> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("userId", "preflight-" + UUID.randomUUID());
+            user.put("organisationId", "preflight");
+            user.put("designation", null);
+            user.put("role", Collections.emptyList());
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Resolver of the relation endpoints of a job. With the filter enabled, the
+     * userIds of all userV3 nodes are streamed into it first.
+     */
+    private UserNodeResolver newNodeResolver(MigrationJob job) {
+        BloomFilter<CharSequence> existingUserIds = null;
+        if (relationsBloomEnabled) {
+            long start = System.nanoTime();
+            try (Session session = neo4jDriver.session()) {
+                long users = session.run("MATCH (u:userV3) RETURN count(u) AS users").single().get("users").asLong();
+                existingUserIds = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                        Math.max(1, users), relationsBloomFpp);
+                StatementResult result = session.run(
+                        "MATCH (u:userV3) WHERE exists(u.userId) RETURN u.userId AS userId");
+                while (result.hasNext()) {
+                    job.checkCancelled();
+                    existingUserIds.put(result.next().get(0).asString());
+                }
+                logger.info("Loaded filter of {} userIds in {} ms", users,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+        UserNodeResolver resolver = new UserNodeResolver(relationsNodeCacheSize, existingUserIds,
+                this::lookUpNodeIds);
+        job.addStatus("nodeResolution", resolver::toMap);
+        return resolver;
+    }
+
+    private Map<String, Long> lookUpNodeIds(List<String> userIds) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("userIds", userIds);
+        try (Session session = neo4jDriver.session()) {
+            return session.readTransaction(tx -> {
+                Map<String, Long> nodeIds = new HashMap<>(userIds.size() * 2);
+                StatementResult result = tx.run(NODE_ID_LOOKUP_QUERY, params);
+                while (result.hasNext()) {
+                    Record record = result.next();
+                    nodeIds.put(record.get(0).asString(), record.get(1).asLong());
+                }
+                return nodeIds;
+            });
+        }
+    }
+
+    /**
+     * Writes one batch of resolved relations with a single UNWIND query in its
+     * own transaction, finding the endpoints by node ID. The driver retries the
+     * transaction on transient errors; a batch that still fails is logged and
+     * skipped without affecting the others.
+     */
+    private void writeRelations(Session session, List<Map<String, Object>> rows, MigrationJob job) {
+        if (rows.isEmpty()) return;
+        Map<String, Object> params = new HashMap<>();
+        params.put("rows", rows);
+        throttles.getNeo4j().acquire(1, rows.size());
+        long start = System.nanoTime();
+        try {
+            int created = session.writeTransaction(tx -> tx.run(RELATION_MERGE_QUERY, params).consume().counters()
+                    .relationshipsCreated());
+            job.addWritten(rows.size());
+            migrationMetrics.recordNeo4jWrite("relations", System.nanoTime() - start, rows.size(), true);
+            logger.info("Processed batch of {} relations, {} relationships created", rows.size(), created);
+        } catch (Exception e) {
+            job.addFailed(rows.size());
+            migrationMetrics.recordNeo4jWrite("relations", System.nanoTime() - start, rows.size(), false);
+            logger.error("Failed to write batch of {} relations: {}", rows.size(), e.getMessage(), e);
+        } finally {
+            job.onItemProcessed("write", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts writing one batch of resolved relations like
+     * {@link #writeRelations}, in a transaction the driver retries on transient
+     * errors. A batch that still fails is logged and counted as failed.
+     *
+     * @return Completed once the batch is written or failed
+     */
+    private CompletionStage<Void> writeRelationsAsync(List<Map<String, Object>> rows, MigrationJob job) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("rows", rows);
+        throttles.getNeo4j().acquire(1, rows.size());
+        long start = System.nanoTime();
+        Session session = neo4jDriver.session();
+        return session.writeTransactionAsync(tx -> tx.runAsync(RELATION_MERGE_QUERY, params)
+                .thenCompose(StatementResultCursor::consumeAsync))
+                .handle((summary, error) -> {
+                    long duration = System.nanoTime() - start;
+                    if (error == null) {
+                        job.addWritten(rows.size());
+                        migrationMetrics.recordNeo4jWrite("relations", duration, rows.size(), true);
+                        logger.info("Processed batch of {} relations, {} relationships created", rows.size(),
+                                summary.counters().relationshipsCreated());
+                    } else {
+                        job.addFailed(rows.size());
+                        migrationMetrics.recordNeo4jWrite("relations", duration, rows.size(), false);
+                        logger.error("Failed to write batch of {} relations: {}", rows.size(), error.getMessage(),
+                                error);
+                    }
+                    job.onItemProcessed("write", duration);
+                    return null;
+                })
+                .thenCompose(ignored -> session.closeAsync());
     }
 
     public static String toValidJson(String input) {
@@ -0,0 +1,80 @@
+package com.neo4j.datamigration.migration.throttle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Request and row rate limits of one target, shared by all jobs. A request is
+ * one query or transaction; rows are those read or written by it. Either rate
+ * can be 0 for unlimited.
+ */
+public class Throttle {
+
+    private final String target;
+    private final TokenBucket requests;
+    private final TokenBucket rows;
+
+    public Throttle(String target, double requestsPerSecond, double rowsPerSecond) {
+        this.target = target;
+        this.requests = new TokenBucket(requestsPerSecond);
+        this.rows = new TokenBucket(rowsPerSecond);
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Waits until the requests and their rows may be sent. Rows not known before
+     * the request, e.g. those of a read, are counted with {@link #record} and
+     * delay the requests after it.
+     *
+     * @throws CancellationException if the calling thread is interrupted while
+     *                               waiting
+     */
+    public void acquire(int requestCount, long rowCount) {
+        requests.acquire(requestCount);
+        rows.acquire(rowCount);
+    }
+
+    /**
+     * Counts requests and rows without waiting, e.g. from a driver callback.
+     */
+    public void record(int requestCount, long rowCount) {
+        requests.take(requestCount);
+        rows.take(rowCount);
+    }
+
+    /**
+     * Both rates are checked before either is changed.
+     *
+     * @param requestsPerSecond New request rate, null to keep the current one
+     * @param rowsPerSecond     New row rate, null to keep the current one
+     * @throws IllegalArgumentException if a rate is negative, infinite or not a
+     *                                  number
+     */
+    public synchronized void setRates(Double requestsPerSecond, Double rowsPerSecond) {
+        if (!isValidRate(requestsPerSecond) || !isValidRate(rowsPerSecond)) {
+            throw new IllegalArgumentException("Rates of " + target
+                    + " must be finite numbers >= 0, 0 for unlimited");
+        }
+        if (requestsPerSecond != null) {
+            requests.setRate(requestsPerSecond);
+        }
+        if (rowsPerSecond != null) {
+            rows.setRate(rowsPerSecond);
+        }
+    }
+
+    private static boolean isValidRate(Double rate) {
+        return rate == null || rate >= 0 && !rate.isInfinite();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> rates = new LinkedHashMap<>();
+        rates.put("requestsPerSecond", requests.getRate());
+        rates.put("rowsPerSecond", rows.getRate());
+        return rates;
+    }
+}
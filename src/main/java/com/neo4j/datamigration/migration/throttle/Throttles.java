@@ -0,0 +1,73 @@
+package com.neo4j.datamigration.migration.throttle;
+
+import com.neo4j.datamigration.utils.Constants;
+import com.neo4j.datamigration.utils.PropertiesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global throttles protecting the production clusters, one per target, with
+ * their initial rates from the properties. Rates can be changed at runtime and
+ * apply to all running jobs immediately.
+ */
+@Component
+public class Throttles {
+
+    public static final String CASSANDRA = "cassandra";
+    public static final String NEO4J = "neo4j";
+
+    private static final Logger logger = LoggerFactory.getLogger(Throttles.class);
+
+    private final Map<String, Throttle> throttles = new LinkedHashMap<>();
+
+    public Throttles() {
+        PropertiesCache properties = PropertiesCache.getInstance();
+        add(new Throttle(CASSANDRA,
+                Double.parseDouble(properties.getProperty(Constants.THROTTLE_CASSANDRA_REQUESTS_PER_SECOND)),
+                Double.parseDouble(properties.getProperty(Constants.THROTTLE_CASSANDRA_ROWS_PER_SECOND))));
+        add(new Throttle(NEO4J,
+                Double.parseDouble(properties.getProperty(Constants.THROTTLE_NEO4J_REQUESTS_PER_SECOND)),
+                Double.parseDouble(properties.getProperty(Constants.THROTTLE_NEO4J_ROWS_PER_SECOND))));
+    }
+
+    public Throttle getCassandra() {
+        return throttles.get(CASSANDRA);
+    }
+
+    public Throttle getNeo4j() {
+        return throttles.get(NEO4J);
+    }
+
+    /**
+     * @return The throttle of the target, null if there is none
+     */
+    public Throttle get(String target) {
+        return throttles.get(target);
+    }
+
+    /**
+     * @see Throttle#setRates(Double, Double)
+     */
+    public Throttle setRates(String target, Double requestsPerSecond, Double rowsPerSecond) {
+        Throttle throttle = throttles.get(target);
+        if (throttle != null) {
+            throttle.setRates(requestsPerSecond, rowsPerSecond);
+            logger.info("Throttle of {} set to {}", target, throttle.toMap());
+        }
+        return throttle;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> rates = new LinkedHashMap<>();
+        throttles.forEach((target, throttle) -> rates.put(target, throttle.toMap()));
+        return rates;
+    }
+
+    private void add(Throttle throttle) {
+        throttles.put(throttle.getTarget(), throttle);
+    }
+}
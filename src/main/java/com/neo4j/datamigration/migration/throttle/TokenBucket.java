@@ -0,0 +1,127 @@
+package com.neo4j.datamigration.migration.throttle;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket refilled at a rate that can be changed while callers wait. The
+ * bucket holds at most one second of tokens, so an idle period allows a burst
+ * of that size and no more.
+ * <p>
+ * A caller may take more tokens than the bucket holds, e.g. a batch of rows
+ * larger than the rate; it waits for a full bucket and leaves it in debt, which
+ * later callers wait out. The average rate is kept either way. Tokens can also
+ * be taken without waiting, for work that is only counted once it is done.
+ */
+public class TokenBucket {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition rateChanged = lock.newCondition();
+    private double ratePerSecond;
+    private double available;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * @param ratePerSecond Tokens per second, 0 for unlimited
+     */
+    public TokenBucket(double ratePerSecond) {
+        setRate(ratePerSecond);
+    }
+
+    public double getRate() {
+        lock.lock();
+        try {
+            return ratePerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the rate, waking up waiting callers. Tokens accumulated so far are
+     * kept up to the capacity of the new rate; a bucket that was unlimited starts
+     * full.
+     *
+     * @param ratePerSecond Tokens per second, 0 for unlimited
+     * @throws IllegalArgumentException if the rate is negative or not a number
+     */
+    public void setRate(double ratePerSecond) {
+        if (!(ratePerSecond >= 0) || Double.isInfinite(ratePerSecond)) {
+            throw new IllegalArgumentException("Rate must be a finite number >= 0, was " + ratePerSecond);
+        }
+        lock.lock();
+        try {
+            refill();
+            boolean wasUnlimited = this.ratePerSecond == 0;
+            this.ratePerSecond = ratePerSecond;
+            available = wasUnlimited ? capacity() : Math.min(available, capacity());
+            rateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the tokens, waiting until the bucket holds them or is full.
+     *
+     * @throws CancellationException if the calling thread is interrupted while
+     *                               waiting, e.g. by an aborted pipeline
+     */
+    public void acquire(long tokens) {
+        lock.lock();
+        try {
+            while (true) {
+                refill();
+                if (ratePerSecond == 0) {
+                    return;
+                }
+                double needed = Math.min(tokens, capacity());
+                if (available >= needed) {
+                    available -= tokens;
+                    return;
+                }
+                long waitNanos = (long) Math.ceil((needed - available) / ratePerSecond * 1e9);
+                rateChanged.awaitNanos(Math.min(waitNanos, MAX_WAIT_NANOS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while throttled");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the tokens without waiting, leaving the bucket in debt if it does not
+     * hold them.
+     */
+    public void take(long tokens) {
+        lock.lock();
+        try {
+            refill();
+            if (ratePerSecond > 0) {
+                available -= tokens;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double capacity() {
+        return Math.max(1, ratePerSecond);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (ratePerSecond == 0) {
+            available = 0;
+        } else {
+            available = Math.min(capacity(), available + (now - refilledAt) / 1e9 * ratePerSecond);
+        }
+        refilledAt = now;
+    }
+}
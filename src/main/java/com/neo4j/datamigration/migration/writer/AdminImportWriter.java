@@ -0,0 +1,187 @@
+package com.neo4j.datamigration.migration.writer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes userV3 nodes and connect relationships as neo4j-admin import files
+ * instead of running transactions, for the first load into an empty database.
+ * Each file set is created with its first row, so a job that only writes
+ * users produces no relationship files.
+ * <p>
+ * Nodes are keyed by userId in the userV3 ID space. Roles are an array
+ * property separated by {@link #ARRAY_DELIMITER}. Relationship properties are
+ * written to a fixed set of columns, since the header is written before the
+ * first row; other keys are dropped.
+ */
+public class AdminImportWriter implements BatchSink<Map<String, Object>>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminImportWriter.class);
+
+    public static final String NODE_LABEL = "userV3";
+    public static final String RELATIONSHIP_TYPE = "connect";
+    public static final char ARRAY_DELIMITER = ';';
+
+    private final Path directory;
+    private final int shards;
+    private final boolean gzip;
+    private final List<String> relationshipProperties;
+    private ShardedCsvFile nodes;
+    private ShardedCsvFile relationships;
+
+    /**
+     * @param relationshipProperties Keys of relProps written as relationship
+     *                               properties
+     */
+    public AdminImportWriter(Path directory, int shards, boolean gzip, List<String> relationshipProperties) {
+        this.directory = directory;
+        this.shards = shards;
+        this.gzip = gzip;
+        this.relationshipProperties = relationshipProperties;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes user update rows as nodes. The rows are not in the database until
+     * the files are imported, so they are never reported as committed.
+     */
+    @Override
+    public int write(List<Map<String, Object>> users, Consumer<List<Map<String, Object>>> onCommitted) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(users.size());
+        List<String> lines = new ArrayList<>(users.size());
+        StringBuilder line = new StringBuilder(128);
+        for (Map<String, Object> user : users) {
+            String userId = (String) user.get("userId");
+            line.setLength(0);
+            line.append(ShardedCsvFile.quote(userId)).append(',')
+                    .append(ShardedCsvFile.quote((String) user.get("organisationId"))).append(',')
+                    .append(ShardedCsvFile.quote((String) user.get("designation"))).append(',');
+            Object roles = user.get("role");
+            if (roles instanceof List && !((List<?>) roles).isEmpty()) {
+                line.append(ShardedCsvFile.quote(((List<?>) roles).stream().map(String::valueOf)
+                        .collect(Collectors.joining(String.valueOf(ARRAY_DELIMITER)))));
+            }
+            keys.add(userId);
+            lines.add(line.toString());
+        }
+        nodes().write(keys, lines);
+        return users.size();
+    }
+
+    /**
+     * Writes relation rows with userId, relationUserId and a relProps map.
+     */
+    public void writeRelations(List<Map<String, Object>> relations) {
+        if (relations.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(relations.size());
+        List<String> lines = new ArrayList<>(relations.size());
+        StringBuilder line = new StringBuilder(128);
+        for (Map<String, Object> relation : relations) {
+            String userId = (String) relation.get("userId");
+            line.setLength(0);
+            line.append(ShardedCsvFile.quote(userId)).append(',')
+                    .append(ShardedCsvFile.quote((String) relation.get("relationUserId")));
+            Map<?, ?> relProps = (Map<?, ?>) relation.get("relProps");
+            for (String property : relationshipProperties) {
+                Object value = relProps == null ? null : relProps.get(property);
+                line.append(',').append(ShardedCsvFile.quote(value == null ? null : value.toString()));
+            }
+            keys.add(userId);
+            lines.add(line.toString());
+        }
+        relationships().write(keys, lines);
+    }
+
+    /**
+     * @return The neo4j-admin (4.x) command that imports the files written so far
+     */
+    public synchronized String importCommand() {
+        StringBuilder command = new StringBuilder("neo4j-admin import --database=<database>")
+                .append(" --multiline-fields=true --skip-duplicate-nodes=true --skip-bad-relationships=true")
+                .append(" --array-delimiter='").append(ARRAY_DELIMITER).append('\'');
+        if (nodes != null) {
+            command.append(" --nodes=").append(NODE_LABEL).append('=').append(fileList(nodes));
+        }
+        if (relationships != null) {
+            command.append(" --relationships=").append(RELATIONSHIP_TYPE).append('=').append(fileList(relationships));
+        }
+        return command.toString();
+    }
+
+    /**
+     * @return Directory, row counts and import command, for the job status
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("directory", directory.toString());
+        state.put("nodes", nodes == null ? 0 : nodes.getRows());
+        state.put("relationships", relationships == null ? 0 : relationships.getRows());
+        state.put("command", importCommand());
+        return state;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (nodes != null) {
+                nodes.close();
+            }
+        } finally {
+            if (relationships != null) {
+                relationships.close();
+            }
+        }
+        if (nodes != null || relationships != null) {
+            logger.info("Import files complete, run: {}", importCommand());
+        }
+    }
+
+    private synchronized ShardedCsvFile nodes() {
+        if (nodes == null) {
+            nodes = open(NODE_LABEL, "userId:ID(" + NODE_LABEL + "),organisationId,designation,role:string[]");
+        }
+        return nodes;
+    }
+
+    private synchronized ShardedCsvFile relationships() {
+        if (relationships == null) {
+            StringBuilder header = new StringBuilder(":START_ID(" + NODE_LABEL + "),:END_ID(" + NODE_LABEL + ")");
+            relationshipProperties.forEach(property -> header.append(',').append(property));
+            relationships = open(RELATIONSHIP_TYPE, header.toString());
+        }
+        return relationships;
+    }
+
+    private ShardedCsvFile open(String prefix, String header) {
+        try {
+            return new ShardedCsvFile(directory, prefix, header, shards, gzip);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create import files in " + directory, e);
+        }
+    }
+
+    private static String fileList(ShardedCsvFile file) {
+        List<String> names = new ArrayList<>();
+        names.add(file.getHeaderFile().toAbsolutePath().toString());
+        file.getDataFiles().forEach(data -> names.add(data.toAbsolutePath().toString()));
+        return String.join(",", names);
+    }
+}
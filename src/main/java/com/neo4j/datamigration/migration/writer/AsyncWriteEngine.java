@@ -0,0 +1,149 @@
+package com.neo4j.datamigration.migration.writer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps up to a fixed number of asynchronous writes in flight. Submitting
+ * returns as soon as the write is started, so one thread can keep many
+ * transactions going; it blocks while all slots are taken, which holds back
+ * the stages before it until a write completes.
+ * <p>
+ * Completions are handled on the engine's own threads rather than the
+ * driver's event loop, so they may block, e.g. to checkpoint. The first
+ * failure of a completion handler fails the next submit and
+ * {@link #awaitIdle()}.
+ */
+public class AsyncWriteEngine implements AutoCloseable {
+
+    private final int maxInFlight;
+    private final Semaphore slots;
+    private final ExecutorService executor;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param name Prefix of the completion thread names
+     */
+    public AsyncWriteEngine(String name, int maxInFlight, int completionThreads) {
+        this.maxInFlight = maxInFlight;
+        this.slots = new Semaphore(maxInFlight);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(completionThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Executor for the continuations of the writes, e.g. retries, so they do
+     * not run on the driver's event loop either.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Waits for a free slot and starts the write.
+     *
+     * @param onComplete Called with the result of the write once it completed
+     * @throws CancellationException if the calling thread is interrupted while
+     *                               waiting
+     */
+    public <T> void submit(Supplier<CompletableFuture<T>> write, Consumer<T> onComplete) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a write slot");
+        }
+        CompletableFuture<T> future;
+        try {
+            throwFailure();
+            future = write.get();
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        future.whenCompleteAsync((result, error) -> {
+            try {
+                if (error != null) {
+                    failure.compareAndSet(null, error);
+                } else {
+                    onComplete.accept(result);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                completed.incrementAndGet();
+                slots.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits until all writes submitted so far have completed.
+     *
+     * @throws CancellationException if the calling thread is interrupted while
+     *                               waiting
+     * @throws RuntimeException      The first failure of a write or completion
+     *                               handler
+     */
+    public void awaitIdle() {
+        try {
+            slots.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for writes to complete");
+        }
+        slots.release(maxInFlight);
+        throwFailure();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("inFlight", maxInFlight - slots.availablePermits());
+        state.put("maxInFlight", maxInFlight);
+        state.put("completed", completed.get());
+        return state;
+    }
+
+    /**
+     * Waits for the writes in flight, without reporting their failures, and
+     * stops the completion threads.
+     */
+    @Override
+    public void close() {
+        try {
+            slots.acquireUninterruptibly(maxInFlight);
+            slots.release(maxInFlight);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void throwFailure() {
+        Throwable error = failure.get();
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new CompletionException(error);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.neo4j.datamigration.migration.writer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Destination of the rows a job writes, e.g. Neo4j over bolt or neo4j-admin
+ * import files. Called concurrently by the write workers of a pipeline.
+ */
+public interface BatchSink<T> {
+
+    /**
+     * @param onCommitted Called with the rows once they are committed to the
+     *                    database, possibly in several parts; not called by
+     *                    sinks that only stage rows for a later load
+     * @return Number of rows written, the others were rejected
+     */
+    int write(List<T> rows, Consumer<List<T>> onCommitted);
+
+    /**
+     * Starts writing the rows and returns without waiting for the write where
+     * the sink supports it; by default the rows are written before returning.
+     *
+     * @return Future of the number of rows written
+     */
+    default CompletableFuture<Integer> writeAsync(List<T> rows, Consumer<List<T>> onCommitted) {
+        return CompletableFuture.completedFuture(write(rows, onCommitted));
+    }
+}
@@ -0,0 +1,80 @@
+package com.neo4j.datamigration.migration.writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CSV file of the rows a job rejected, one line of ID and reason per row. The
+ * ID is the first column and the header names it, so the file can be
+ * re-submitted as the input of an onboarding job. The file is created with
+ * the first rejected row and every row is flushed as it is written, so the
+ * file is complete up to the last rejection even if the job dies.
+ */
+public class DeadLetterFile implements AutoCloseable {
+
+    private final Path path;
+    private final String idColumn;
+    private BufferedWriter writer;
+    private long rows;
+
+    public DeadLetterFile(Path path, String idColumn) {
+        this.path = path;
+        this.idColumn = idColumn;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized void write(String id, String reason) {
+        try {
+            if (writer == null) {
+                Files.createDirectories(path.getParent());
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+                writer.write(idColumn + ",reason\n");
+            }
+            writer.write(id + "," + quote(reason) + "\n");
+            writer.flush();
+            rows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dead letter file " + path, e);
+        }
+    }
+
+    /**
+     * @return The file and its number of rows, for the job status, or null if
+     *         nothing was rejected
+     */
+    public synchronized Map<String, Object> toMap() {
+        if (rows == 0) {
+            return null;
+        }
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("file", path.toString());
+        state.put("rows", rows);
+        return state;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private static String quote(String value) {
+        String singleLine = value == null ? "" : value.replace('\r', ' ').replace('\n', ' ');
+        return "\"" + singleLine.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,145 @@
+package com.neo4j.datamigration.migration.writer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Writes relationship rows from several threads without two concurrent
+ * transactions ever locking the same node. Every node is assigned to one of
+ * {@code partitions} partitions by hashing its userId, and the rows of a batch
+ * are bucketed by the partitions of their two endpoints.
+ * <p>
+ * Buckets are written in rounds separated by a barrier. The first round writes
+ * the buckets whose endpoints share a partition, one worker per partition. The
+ * remaining rounds follow a round-robin tournament: each round pairs every
+ * partition with exactly one other, and the worker for a pair writes the rows
+ * between those two partitions in both directions. Buckets of the same round
+ * therefore touch disjoint sets of nodes.
+ */
+public class PartitionedRelationWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedRelationWriter.class);
+
+    private final int partitions;
+    private final String sourceKey;
+    private final String targetKey;
+    private final Consumer<List<Map<String, Object>>> bucketWriter;
+    private final ExecutorService executor;
+    private final List<List<int[]>> rounds;
+
+    /**
+     * @param partitions   Number of node partitions, i.e. concurrent writers
+     * @param sourceKey    Row key holding the userId of the start node
+     * @param targetKey    Row key holding the userId of the end node
+     * @param bucketWriter Writes all rows of one bucket, called concurrently for
+     *                     the buckets of a round
+     */
+    public PartitionedRelationWriter(int partitions, String sourceKey, String targetKey,
+                                     Consumer<List<Map<String, Object>>> bucketWriter) {
+        this.partitions = partitions;
+        this.sourceKey = sourceKey;
+        this.targetKey = targetKey;
+        this.bucketWriter = bucketWriter;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "relationWriter-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rounds = buildRounds(partitions);
+    }
+
+    /**
+     * Writes one batch of rows and returns once every round has completed.
+     */
+    public void write(List<Map<String, Object>> rows) {
+        List<List<Map<String, Object>>> buckets = bucketRows(rows);
+        for (List<int[]> round : rounds) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(round.size());
+            for (int[] pair : round) {
+                List<Map<String, Object>> bucket = new ArrayList<>(buckets.get(bucketIndex(pair[0], pair[1])));
+                if (pair[0] != pair[1]) {
+                    bucket.addAll(buckets.get(bucketIndex(pair[1], pair[0])));
+                }
+                if (!bucket.isEmpty()) {
+                    futures.add(CompletableFuture.runAsync(() -> bucketWriter.accept(bucket), executor));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+        logger.info("Wrote batch of {} relations in {} rounds over {} partitions", rows.size(), rounds.size(),
+                partitions);
+    }
+
+    /**
+     * @return One bucket per pair of start and end partition, at
+     * {@link #bucketIndex(int, int)}
+     */
+    private List<List<Map<String, Object>>> bucketRows(List<Map<String, Object>> rows) {
+        List<List<Map<String, Object>>> buckets = new ArrayList<>(partitions * partitions);
+        for (int i = 0; i < partitions * partitions; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Map<String, Object> row : rows) {
+            buckets.get(bucketIndex(partitionOf(row.get(sourceKey)), partitionOf(row.get(targetKey)))).add(row);
+        }
+        return buckets;
+    }
+
+    private int bucketIndex(int sourcePartition, int targetPartition) {
+        return sourcePartition * partitions + targetPartition;
+    }
+
+    private int partitionOf(Object userId) {
+        return Math.floorMod(String.valueOf(userId).hashCode(), partitions);
+    }
+
+    /**
+     * First round pairs every partition with itself, followed by the rounds of
+     * the circle method for a round-robin tournament. With an odd number of
+     * partitions a dummy partition is added and its pairs are dropped.
+     */
+    static List<List<int[]>> buildRounds(int partitions) {
+        List<List<int[]>> rounds = new ArrayList<>();
+        List<int[]> diagonal = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            diagonal.add(new int[] { i, i });
+        }
+        rounds.add(diagonal);
+        int slots = partitions % 2 == 0 ? partitions : partitions + 1;
+        int[] circle = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            circle[i] = i;
+        }
+        for (int round = 0; round < slots - 1; round++) {
+            List<int[]> pairs = new ArrayList<>(slots / 2);
+            for (int k = 0; k < slots / 2; k++) {
+                int a = circle[k];
+                int b = circle[slots - 1 - k];
+                if (a < partitions && b < partitions) {
+                    pairs.add(new int[] { a, b });
+                }
+            }
+            rounds.add(pairs);
+            // Keep the first slot fixed and rotate the rest by one.
+            int last = circle[slots - 1];
+            System.arraycopy(circle, 1, circle, 2, slots - 2);
+            circle[1] = last;
+        }
+        return rounds;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,156 @@
+package com.neo4j.datamigration.migration.writer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Writes batches in one transaction each and isolates failures to the rows
+ * that cause them. A transient failure, e.g. a deadlock or a leader switch, is
+ * retried with exponential backoff and jitter. A batch that fails for any other
+ * reason is split in halves that are written separately, recursively, until
+ * the failing rows are isolated; each of them is handed to the rejection
+ * handler with its error, while the rest of the batch is written. A batch whose
+ * retries are exhausted is rejected as a whole, since splitting it would not
+ * help.
+ * <p>
+ * None of this blocks: backoffs are scheduled and continuations run on the
+ * given executor. {@link #write(List, Consumer)} waits for
+ * {@link #writeAsync(List, Consumer)}.
+ */
+public class RetryingBatchWriter<T> implements BatchSink<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryingBatchWriter.class);
+
+    private final Function<List<T>, CompletionStage<?>> asyncBatchWriter;
+    private final Executor executor;
+    private final Predicate<Throwable> isTransient;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final BiConsumer<T, Throwable> rejectionHandler;
+
+    /**
+     * @param asyncBatchWriter Starts a transaction writing all rows, completed
+     *                         when it is committed or failed
+     * @param executor         Runs the continuations, including retries and
+     *                         the rejection handler
+     * @param maxAttempts      Attempts of a batch on transient failures,
+     *                         including the first one
+     * @param rejectionHandler Called with every row that could not be written
+     */
+    public RetryingBatchWriter(Function<List<T>, CompletionStage<?>> asyncBatchWriter, Executor executor,
+                               Predicate<Throwable> isTransient, int maxAttempts, long initialBackoffMillis,
+                               long maxBackoffMillis, BiConsumer<T, Throwable> rejectionHandler) {
+        this.asyncBatchWriter = asyncBatchWriter;
+        this.executor = executor;
+        this.isTransient = isTransient;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    /**
+     * Waits for {@link #writeAsync(List, Consumer)}.
+     *
+     * @param onCommitted Called with the rows of every committed transaction,
+     *                    which are sub-lists of rows once a batch was split
+     * @return Number of rows written, the others were rejected
+     * @throws CancellationException if the write was cancelled
+     */
+    @Override
+    public int write(List<T> rows, Consumer<List<T>> onCommitted) {
+        try {
+            return writeAsync(rows, onCommitted).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * @param onCommitted Called with the rows of every committed transaction,
+     *                    which are sub-lists of rows once a batch was split
+     * @return Future of the number of rows written, the others were rejected
+     */
+    @Override
+    public CompletableFuture<Integer> writeAsync(List<T> rows, Consumer<List<T>> onCommitted) {
+        if (rows.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return attemptAsync(rows, 1, initialBackoffMillis).thenComposeAsync(failure -> {
+            if (failure == null) {
+                onCommitted.accept(rows);
+                return CompletableFuture.completedFuture(rows.size());
+            }
+            if (failure instanceof CancellationException) {
+                throw failure;
+            }
+            if (isTransient.test(failure)) {
+                logger.error("Rejecting batch of {} rows after {} attempts: {}", rows.size(), maxAttempts,
+                        failure.getMessage());
+                rows.forEach(row -> rejectionHandler.accept(row, failure));
+                return CompletableFuture.completedFuture(0);
+            }
+            if (rows.size() == 1) {
+                logger.warn("Rejecting row: {}", failure.getMessage());
+                rejectionHandler.accept(rows.get(0), failure);
+                return CompletableFuture.completedFuture(0);
+            }
+            int half = rows.size() / 2;
+            logger.warn("Batch of {} rows failed, writing halves separately: {}", rows.size(),
+                    failure.getMessage());
+            return writeAsync(rows.subList(0, half), onCommitted).thenCompose(
+                    first -> writeAsync(rows.subList(half, rows.size()), onCommitted).thenApply(
+                            second -> first + second));
+        }, executor);
+    }
+
+    /**
+     * @return Future of the failure of the last attempt, or of null once the
+     *         batch is written
+     */
+    private CompletableFuture<RuntimeException> attemptAsync(List<T> rows, int attempt, long backoffMillis) {
+        CompletableFuture<?> write;
+        try {
+            write = asyncBatchWriter.apply(rows).toCompletableFuture();
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
+        }
+        return write.handle((ignored, error) -> error == null ? null : unwrap(error))
+                .thenComposeAsync(failure -> {
+                    if (failure == null || failure instanceof CancellationException || attempt >= maxAttempts
+                            || !isTransient.test(failure)) {
+                        return CompletableFuture.completedFuture(failure);
+                    }
+                    long sleepMillis = backoffMillis / 2
+                            + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+                    logger.warn("Transient failure writing batch of {} rows, attempt {} of {}, retrying in {} ms: {}",
+                            rows.size(), attempt, maxAttempts, sleepMillis, failure.getMessage());
+                    Executor delayed = CompletableFuture.delayedExecutor(sleepMillis, TimeUnit.MILLISECONDS,
+                            executor);
+                    return CompletableFuture.runAsync(() -> {
+                    }, delayed).thenCompose(ignored -> attemptAsync(rows, attempt + 1,
+                            Math.min(maxBackoffMillis, backoffMillis * 2)));
+                }, executor);
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof RuntimeException ? (RuntimeException) error : new CompletionException(error);
+    }
+}
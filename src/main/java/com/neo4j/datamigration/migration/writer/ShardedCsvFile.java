@@ -0,0 +1,128 @@
+package com.neo4j.datamigration.migration.writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CSV data split over several files, with the header in a file of its own as
+ * neo4j-admin import expects it for multi-file inputs. Rows are assigned to a
+ * shard by the hash of their key, so writers of different shards never wait
+ * for each other and the files are about the same size.
+ * <p>
+ * Values are written as given; quote them with {@link #quote(String)}.
+ */
+public class ShardedCsvFile implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path headerFile;
+    private final List<Path> dataFiles = new ArrayList<>();
+    private final Writer[] shards;
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * @param prefix File name prefix, e.g. the label or relationship type
+     * @param gzip   Whether to compress the data files
+     */
+    public ShardedCsvFile(Path directory, String prefix, String header, int shards, boolean gzip)
+            throws IOException {
+        Files.createDirectories(directory);
+        this.headerFile = directory.resolve(prefix + "-header.csv");
+        Files.write(headerFile, (header + "\n").getBytes(StandardCharsets.UTF_8));
+        this.shards = new Writer[shards];
+        for (int i = 0; i < shards; i++) {
+            Path file = directory.resolve(String.format("%s-part-%03d.csv%s", prefix, i, gzip ? ".gz" : ""));
+            OutputStream out = Files.newOutputStream(file);
+            if (gzip) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            this.shards[i] = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            dataFiles.add(file);
+        }
+    }
+
+    public Path getHeaderFile() {
+        return headerFile;
+    }
+
+    public List<Path> getDataFiles() {
+        return dataFiles;
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * Appends the lines, each to the shard of its key.
+     *
+     * @param keys  Shard key of each line
+     * @param lines Complete CSV lines without the line break
+     */
+    public void write(List<String> keys, List<String> lines) {
+        List<List<String>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            byShard.get(Math.floorMod(keys.get(i).hashCode(), shards.length)).add(lines.get(i));
+        }
+        for (int i = 0; i < shards.length; i++) {
+            List<String> shardLines = byShard.get(i);
+            if (shardLines.isEmpty()) {
+                continue;
+            }
+            Writer shard = shards[i];
+            synchronized (shard) {
+                try {
+                    for (String line : shardLines) {
+                        shard.write(line);
+                        shard.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write " + dataFiles.get(i), e);
+                }
+            }
+        }
+        rows.addAndGet(lines.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Writer shard : shards) {
+            synchronized (shard) {
+                try {
+                    shard.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return The value in double quotes with quotes doubled, or an empty field
+     *         for null, which neo4j-admin imports as no property
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,25 @@
+package com.neo4j.datamigration.migration.writer;
+
+/**
+ * Where a job writes users and relations to.
+ */
+public enum SinkType {
+
+    /** Transactional writes to the running database. */
+    BOLT,
+
+    /** CSV files for neo4j-admin import into an empty database. */
+    IMPORT;
+
+    /**
+     * @throws IllegalArgumentException if the name, ignoring case, is not a sink
+     */
+    public static SinkType of(String name) {
+        for (SinkType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sink " + name + ", expected bolt or import");
+    }
+}
@@ -0,0 +1,104 @@
+package com.neo4j.datamigration.migration.writer;
+
+import com.google.common.hash.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Resolves userIds to internal node IDs for relationship writes, so a write
+ * finds its endpoints by ID instead of two index lookups per row. Resolved
+ * IDs are kept in a bounded LRU cache since the same users appear in many
+ * relationships; the others are looked up in bulk, once per batch.
+ * <p>
+ * With a filter of the userIds that existed when the job started, IDs it does
+ * not contain are known to be missing without a lookup. Users created after
+ * that are therefore treated as missing. Internal IDs can be reused after a
+ * node is deleted, so a resolver must only live as long as one job.
+ */
+public class UserNodeResolver {
+
+    private final Map<String, Long> cache;
+    private final BloomFilter<CharSequence> existingUserIds;
+    private final Function<List<String>, Map<String, Long>> lookup;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong lookedUp = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong filtered = new AtomicLong();
+
+    /**
+     * @param existingUserIds Filter of the existing userIds, null to look up
+     *                        every ID that is not cached
+     * @param lookup          Returns the node ID of each of the userIds that
+     *                        exists
+     */
+    public UserNodeResolver(int cacheSize, BloomFilter<CharSequence> existingUserIds,
+                            Function<List<String>, Map<String, Long>> lookup) {
+        this.cache = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.existingUserIds = existingUserIds;
+        this.lookup = lookup;
+    }
+
+    /**
+     * @return Node ID of every userId that exists, the others are missing
+     */
+    public Map<String, Long> resolve(Collection<String> userIds) {
+        Set<String> distinct = new LinkedHashSet<>(userIds);
+        Map<String, Long> resolved = new HashMap<>(distinct.size() * 2);
+        List<String> unresolved = new ArrayList<>();
+        synchronized (cache) {
+            for (String userId : distinct) {
+                Long nodeId = cache.get(userId);
+                if (nodeId != null) {
+                    resolved.put(userId, nodeId);
+                } else if (existingUserIds != null && !existingUserIds.mightContain(userId)) {
+                    filtered.incrementAndGet();
+                } else {
+                    unresolved.add(userId);
+                }
+            }
+        }
+        cacheHits.addAndGet(resolved.size());
+        if (!unresolved.isEmpty()) {
+            Map<String, Long> found = lookup.apply(unresolved);
+            lookedUp.addAndGet(unresolved.size());
+            notFound.addAndGet(unresolved.size() - found.size());
+            synchronized (cache) {
+                cache.putAll(found);
+            }
+            resolved.putAll(found);
+        }
+        return resolved;
+    }
+
+    /**
+     * @return Cache size and resolution counts, for the job status
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        synchronized (cache) {
+            state.put("cached", cache.size());
+        }
+        state.put("cacheHits", cacheHits.get());
+        state.put("lookedUp", lookedUp.get());
+        state.put("notFound", notFound.get());
+        state.put("filtered", filtered.get());
+        state.put("filter", existingUserIds != null);
+        return state;
+    }
+}
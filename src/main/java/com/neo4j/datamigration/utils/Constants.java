@@ -10,6 +10,9 @@ public class Constants {
 	public static final String MAX_REQUEST_PER_CONNECTION = "maxRequestsPerConnection";
 	public static final String HEARTBEAT_INTERVAL = "heartbeatIntervalSeconds";
 	public static final String POOL_TIMEOUT = "poolTimeoutMillis";
+	public static final String PREPARED_STATEMENT_CACHE_SIZE = "preparedStatementCacheSize";
+	public static final String ASYNC_KEYS_PER_REQUEST = "asyncKeysPerRequest";
+	public static final String ASYNC_MAX_IN_FLIGHT_PER_HOST = "asyncMaxInFlightPerHost";
 	public static final String CASSANDRA_CONFIG_HOST = "cassandra.config.host";
 	public static final String SUNBIRD_CASSANDRA_CONSISTENCY_LEVEL = "sunbird_cassandra_consistency_level";
 	public static final String INSERT_INTO = "INSERT INTO ";
@@ -19,15 +22,68 @@ public class Constants {
 	public static final String QUE_MARK = "?";
 	public static final String COMMA = ",";
 	public static final String CLOSING_BRACE = ");";
+	public static final String CLOSE_BRACE = ")";
+	public static final String SELECT = "SELECT ";
+	public static final String FROM = " FROM ";
+	public static final String WHERE = " WHERE ";
+	public static final String AND = " AND ";
+	public static final String TOKEN = "token";
 	public static final String EXCEPTION_MSG_FETCH = "Exception occurred while fetching record from ";
 	public static final String ID = "id";
 	public static final String TABLE_USER = "user";
+	public static final String TABLE_USER_ROLES = "user_roles";
+	public static final String USER_ID = "userid";
 	public static final String ORGANISATION_ID = "organisationId";
 	public static final String NEO4J_AUTH_ENABLED = "neo4j.auth.enable";
 	public static final String NEO4J_HOST_URL = "neo4j.url";
 	public static final String NEO4J_USER_NAME = "neo4j.username";
 	public static final String NEO4J_PASSWORD = "neo4j.password";
 	public static final String NEO$J_TIMEOUT = "neo.timeout";
+	public static final String JOB_MAX_CONCURRENT = "job.max.concurrent";
+	public static final String JOB_HISTORY_SIZE = "job.history.size";
+	public static final String CHECKPOINT_DIR = "checkpoint.dir";
+	public static final String CHECKPOINT_SYNC_EVERY = "checkpoint.sync.every";
+	public static final String CHECKPOINT_SYNC_INTERVAL_MS = "checkpoint.sync.interval.ms";
+	public static final String RELATIONS_BATCH_SIZE = "relations.batch.size";
+	public static final String RELATIONS_PARALLEL_BATCH_SIZE = "relations.parallel.batch.size";
+	public static final String RELATIONS_PARALLEL_PARTITIONS = "relations.parallel.partitions";
+	public static final String PROFILE_DESIGNATION_PATHS = "profile.designation.paths";
+	public static final String INGEST_BASE_DIR = "ingest.base.dir";
+	public static final String CSV_PARSE_THREADS = "csv.parse.threads";
+	public static final String CSV_PARSE_CHUNK_SIZE_MB = "csv.parse.chunk.size.mb";
+	public static final String ADAPTIVE_BATCH_SIZE_MIN = "adaptive.batch.size.min";
+	public static final String ADAPTIVE_BATCH_SIZE_MAX = "adaptive.batch.size.max";
+	public static final String ADAPTIVE_BATCH_SIZE_INITIAL = "adaptive.batch.size.initial";
+	public static final String ADAPTIVE_BATCH_SIZE_STEP = "adaptive.batch.size.step";
+	public static final String ADAPTIVE_CONCURRENCY_MIN = "adaptive.concurrency.min";
+	public static final String ADAPTIVE_CONCURRENCY_MAX = "adaptive.concurrency.max";
+	public static final String ADAPTIVE_CONCURRENCY_INITIAL = "adaptive.concurrency.initial";
+	public static final String ADAPTIVE_BACKOFF_RATIO = "adaptive.backoff.ratio";
+	public static final String ADAPTIVE_COOLDOWN_MS = "adaptive.cooldown.ms";
+	public static final String ADAPTIVE_LATENCY_TOLERANCE = "adaptive.latency.tolerance";
+	public static final String NEO4J_WRITE_RETRY_ATTEMPTS = "neo4j.write.retry.attempts";
+	public static final String NEO4J_WRITE_RETRY_BACKOFF_MS = "neo4j.write.retry.backoff.ms";
+	public static final String NEO4J_WRITE_RETRY_MAX_BACKOFF_MS = "neo4j.write.retry.max.backoff.ms";
+	public static final String NEO4J_WRITE_MAX_IN_FLIGHT = "neo4j.write.max.in.flight";
+	public static final String DEAD_LETTER_DIR = "deadletter.dir";
+	public static final String FINGERPRINT_STORE_PATH = "fingerprint.store.path";
+	public static final String FINGERPRINT_STORE_CAPACITY = "fingerprint.store.capacity";
+	public static final String USER_ROLES_SOURCE = "user.roles.source";
+	public static final String IMPORT_DIR = "import.dir";
+	public static final String IMPORT_SHARDS = "import.shards";
+	public static final String IMPORT_GZIP = "import.gzip";
+	public static final String IMPORT_RELATIONSHIP_PROPERTIES = "import.relationship.properties";
+	public static final String THROTTLE_CASSANDRA_REQUESTS_PER_SECOND = "throttle.cassandra.requests.per.second";
+	public static final String THROTTLE_CASSANDRA_ROWS_PER_SECOND = "throttle.cassandra.rows.per.second";
+	public static final String THROTTLE_NEO4J_REQUESTS_PER_SECOND = "throttle.neo4j.requests.per.second";
+	public static final String THROTTLE_NEO4J_ROWS_PER_SECOND = "throttle.neo4j.rows.per.second";
+	public static final String RELATIONS_NODE_CACHE_SIZE = "relations.node.cache.size";
+	public static final String RELATIONS_BLOOM_ENABLED = "relations.bloom.enabled";
+	public static final String RELATIONS_BLOOM_FPP = "relations.bloom.fpp";
+	public static final String PREFLIGHT_ENABLED = "preflight.enabled";
+	public static final String PREFLIGHT_CREATE_SCHEMA = "preflight.create.schema";
+	public static final String PREFLIGHT_INDEX_TIMEOUT_SECONDS = "preflight.index.timeout.seconds";
+	public static final String PREFLIGHT_PROBE_ROWS = "preflight.probe.rows";
 
 
 }
@@ -0,0 +1,98 @@
+package com.neo4j.datamigration.migration.service;
+
+import com.neo4j.datamigration.migration.model.UserBatch;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compressed user ID files read end to end through streamUserIdsInBatches,
+ * against the plain file they were compressed from. The file spans several
+ * read-ahead chunks.
+ */
+public class CompressedUserIdsTest {
+
+    private static final int USERS = 200_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path plain;
+    private static List<UserBatch> expected;
+
+    @BeforeClass
+    public static void writeUserIds() throws Exception {
+        plain = folder.getRoot().toPath().resolve("users.csv");
+        StringBuilder csv = new StringBuilder("id,name\r\n");
+        for (int i = 0; i < USERS; i++) {
+            csv.append("user-").append(i).append(",\"Name, ").append(i).append("\"\r\n");
+        }
+        Files.write(plain, csv.toString().getBytes(StandardCharsets.UTF_8));
+        expected = read(plain);
+    }
+
+    @Test
+    public void gzip() throws Exception {
+        assertSameBatches(compress("users.csv.gz", GZIPOutputStream::new));
+    }
+
+    @Test
+    public void bzip2() throws Exception {
+        assertSameBatches(compress("users.csv.bz2", BZip2CompressorOutputStream::new));
+    }
+
+    private static void assertSameBatches(Path compressed) throws Exception {
+        List<Long> progress = new ArrayList<>();
+        List<UserBatch> batches = new ArrayList<>();
+        new DataMigrationServiceImpl().streamUserIdsInBatches(compressed, () -> BATCH_SIZE, null, progress::add,
+                batches::add);
+
+        assertEquals(USERS / BATCH_SIZE, expected.size());
+        assertEquals(expected.size(), batches.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUserIds(), batches.get(i).getUserIds());
+            assertEquals(expected.get(i).getStartOffset(), batches.get(i).getStartOffset());
+            assertEquals(expected.get(i).getEndOffset(), batches.get(i).getEndOffset());
+        }
+        assertEquals("user-" + (USERS - 1), batches.get(batches.size() - 1).getUserIds().get(BATCH_SIZE - 1));
+        assertEquals(Files.size(plain), batches.get(batches.size() - 1).getEndOffset());
+        // Progress counts compressed bytes.
+        assertEquals(Files.size(compressed), (long) progress.get(progress.size() - 1));
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) >= progress.get(i - 1));
+        }
+    }
+
+    private static List<UserBatch> read(Path input) throws Exception {
+        List<UserBatch> batches = new ArrayList<>();
+        new DataMigrationServiceImpl().streamUserIdsInBatches(input, BATCH_SIZE, null, batches::add);
+        return batches;
+    }
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    private static Path compress(String name, Compressor compressor) throws IOException {
+        Path compressed = folder.getRoot().toPath().resolve(name);
+        try (OutputStream out = compressor.wrap(Files.newOutputStream(compressed))) {
+            Files.copy(plain, out);
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,43 @@
+package com.neo4j.datamigration.migration.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class UserFingerprintTest {
+
+    @Test
+    public void reorderedRolesKeepTheFingerprint() {
+        long fingerprint = DataMigrationServiceImpl.userFingerprint(
+                update("org1", "Section Officer", Arrays.asList("PUBLIC", "MDO_ADMIN", "CONTENT_CREATOR")));
+
+        assertEquals(fingerprint, DataMigrationServiceImpl.userFingerprint(
+                update("org1", "Section Officer", Arrays.asList("CONTENT_CREATOR", "PUBLIC", "MDO_ADMIN"))));
+    }
+
+    @Test
+    public void changedRolesChangeTheFingerprint() {
+        long fingerprint = DataMigrationServiceImpl.userFingerprint(
+                update("org1", "Section Officer", Arrays.asList("PUBLIC", "MDO_ADMIN")));
+
+        assertNotEquals(fingerprint, DataMigrationServiceImpl.userFingerprint(
+                update("org1", "Section Officer", Arrays.asList("PUBLIC", "SPV_ADMIN"))));
+        assertNotEquals(fingerprint, DataMigrationServiceImpl.userFingerprint(
+                update("org1", "Section Officer", Arrays.asList("PUBLIC"))));
+    }
+
+    private static Map<String, Object> update(String organisationId, String designation, List<String> roles) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("userId", "user1");
+        update.put("organisationId", organisationId);
+        update.put("designation", designation);
+        update.put("role", roles);
+        return update;
+    }
+}